@@ -16,10 +16,10 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         mTabLayout = (BottomTabLayout) findViewById(R.id.btl);
-        mTabLayout.addTab(new TabView.Tab(this).setIcon(R.drawable.tab_cup));
-        mTabLayout.addTab(new TabView.Tab(this).setIcon(R.drawable.tab_cake));
-        mTabLayout.addTab(new TabView.Tab(this).setIcon(R.drawable.tab_apple));
-        mTabLayout.addTab(new TabView.Tab(this).setIcon(R.drawable.tab_hamburger));
+        mTabLayout.addTab(new TabView.Tab().setIcon(R.drawable.tab_cup));
+        mTabLayout.addTab(new TabView.Tab().setIcon(R.drawable.tab_cake));
+        mTabLayout.addTab(new TabView.Tab().setIcon(R.drawable.tab_apple));
+        mTabLayout.addTab(new TabView.Tab().setIcon(R.drawable.tab_hamburger));
 
     }
 }
@@ -0,0 +1,69 @@
+package com.thea.widget.tablayout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Diffing tab lists for {@link BottomTabLayout#updateTabs(List)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TabDiffBenchmark {
+    @Param({"10", "100", "1000"})
+    public int tabCount;
+
+    private List<Integer> mOldKeys;
+    private List<Integer> mSameKeys;
+    private List<Integer> mEditedKeys;
+    private List<Integer> mShuffledKeys;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        mOldKeys = new ArrayList<>(tabCount);
+        for (int i = 0; i < tabCount; i++)
+            mOldKeys.add(i);
+        mSameKeys = new ArrayList<>(mOldKeys);
+
+        // Drop every tenth tab, add as many new ones and move a few
+        mEditedKeys = new ArrayList<>(tabCount);
+        for (int i = 0; i < tabCount; i++)
+            mEditedKeys.add(i % 10 == 0 ? tabCount + i : i);
+        for (int i = 0; i < Math.max(1, tabCount / 20); i++)
+            Collections.swap(mEditedKeys, random.nextInt(tabCount), random.nextInt(tabCount));
+
+        mShuffledKeys = new ArrayList<>(mOldKeys);
+        Collections.shuffle(mShuffledKeys, random);
+    }
+
+    @Benchmark
+    public int unchanged() {
+        return TabDiff.calculate(mOldKeys, mSameKeys).getMoveCount();
+    }
+
+    @Benchmark
+    public int edited() {
+        return TabDiff.calculate(mOldKeys, mEditedKeys).getMoveCount();
+    }
+
+    @Benchmark
+    public int shuffled() {
+        return TabDiff.calculate(mOldKeys, mShuffledKeys).getMoveCount();
+    }
+}
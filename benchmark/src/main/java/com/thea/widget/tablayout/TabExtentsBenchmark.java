@@ -0,0 +1,100 @@
+package com.thea.widget.tablayout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * Adding, removing and laying out tabs, and the scroll and indicator math run for every
+ * page scroll callback.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TabExtentsBenchmark {
+    private static final int VIEWPORT_WIDTH = 1080;
+    private static final int SCROLL_STEPS = 32;
+
+    @Param({"10", "100", "1000"})
+    public int tabCount;
+
+    private int[] mWidths;
+    private TabExtents mExtents;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        mWidths = new int[tabCount];
+        for (int i = 0; i < tabCount; i++)
+            mWidths[i] = 160 + random.nextInt(200);
+        mExtents = newExtents();
+    }
+
+    private TabExtents newExtents() {
+        final TabExtents extents = new TabExtents();
+        for (int i = 0; i < tabCount; i++)
+            extents.insert(i, mWidths[i]);
+        extents.layout(0);
+        return extents;
+    }
+
+    @Benchmark
+    public int addTabs() {
+        final TabExtents extents = new TabExtents();
+        for (int i = 0; i < tabCount; i++)
+            extents.insert(i, mWidths[i]);
+        return extents.layout(0);
+    }
+
+    @Benchmark
+    public int addTabsAtStart() {
+        // Every insert shifts the following tabs, like addTab(tab, 0)
+        final TabExtents extents = new TabExtents();
+        for (int i = 0; i < tabCount; i++)
+            extents.insert(0, mWidths[i]);
+        return extents.layout(0);
+    }
+
+    @Benchmark
+    public int addAndRemoveTabs() {
+        final TabExtents extents = newExtents();
+        for (int i = tabCount - 1; i >= 0; i -= 2)
+            extents.remove(i);
+        while (extents.getCount() > 0)
+            extents.remove(0);
+        return extents.getCount();
+    }
+
+    @Benchmark
+    public int layout() {
+        mExtents.invalidateWidths();
+        for (int i = 0; i < tabCount; i++)
+            mExtents.setWidth(i, mWidths[i]);
+        return mExtents.layout(0);
+    }
+
+    @Benchmark
+    public void pageScroll(Blackhole blackhole) {
+        // One ViewPager swipe from the middle tab to the next
+        final int position = tabCount / 2;
+        for (int step = 0; step < SCROLL_STEPS; step++) {
+            final float offset = step / (float) SCROLL_STEPS;
+            final int scrollX = mExtents.calculateScrollX(position, offset, VIEWPORT_WIDTH);
+            blackhole.consume(scrollX);
+            blackhole.consume(mExtents.indexAt(scrollX));
+            blackhole.consume(mExtents.indexAt(scrollX + VIEWPORT_WIDTH));
+        }
+    }
+}
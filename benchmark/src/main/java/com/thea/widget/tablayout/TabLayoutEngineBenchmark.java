@@ -0,0 +1,68 @@
+package com.thea.widget.tablayout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Measuring and laying out the tab strip in every mode and gravity, as done by each measure
+ * and layout pass of the strip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TabLayoutEngineBenchmark {
+    private static final int GUTTER = 48;
+
+    @Param({"10", "100", "1000"})
+    public int tabCount;
+
+    @Param({"scrollable", "fixed-fill", "fixed-center"})
+    public String layout;
+
+    private int mMode;
+    private int mGravity;
+    private int mAvailableWidth;
+    private int[] mContentWidths;
+    private final TabLayoutEngine mEngine = new TabLayoutEngine();
+
+    @Setup
+    public void setUp() {
+        mMode = layout.equals("scrollable")
+                ? TabLayoutEngine.MODE_SCROLLABLE : TabLayoutEngine.MODE_FIXED;
+        mGravity = layout.equals("fixed-center")
+                ? TabLayoutEngine.GRAVITY_CENTER : TabLayoutEngine.GRAVITY_FILL;
+
+        final Random random = new Random(42);
+        mContentWidths = new int[tabCount];
+        for (int i = 0; i < tabCount; i++)
+            mContentWidths[i] = 160 + random.nextInt(200);
+        // Wide enough for centered tabs to stay centered
+        mAvailableWidth = 360 * tabCount + GUTTER * 2;
+    }
+
+    @Benchmark
+    public int measureAndLayout() {
+        mEngine.measure(mContentWidths, tabCount, mMode, mGravity, mAvailableWidth, GUTTER);
+        mEngine.layout(0, mAvailableWidth, false);
+        return mEngine.getContentWidth();
+    }
+
+    @Benchmark
+    public int measureAndLayoutRtl() {
+        mEngine.measure(mContentWidths, tabCount, mMode, mGravity, mAvailableWidth, GUTTER);
+        mEngine.layout(0, mAvailableWidth, true);
+        return mEngine.getContentWidth();
+    }
+}
@@ -0,0 +1,85 @@
+package com.thea.widget.tablayout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The tab store read by every {@link BottomTabLayout} measure pass. The default height check
+ * and id lookups should cost the same for any number of tabs, unlike the scan measure used to
+ * run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TabStoreBenchmark {
+    @Param({"5", "50", "500"})
+    public int tabCount;
+
+    private TabStore<Tab> mStore;
+
+    @Setup
+    public void setUp() {
+        mStore = new TabStore<>();
+        for (int i = 0; i < tabCount; i++)
+            // Only the last tab has an icon and a text, the worst case for a scan
+            mStore.add(i, new Tab(i, i == tabCount - 1));
+    }
+
+    @Benchmark
+    public boolean defaultHeightCheck() {
+        return mStore.hasIconAndText();
+    }
+
+    @Benchmark
+    public boolean defaultHeightScan() {
+        // What measuring did before the store kept count
+        for (int i = 0, count = mStore.size(); i < count; i++) {
+            if (mStore.get(i).hasIconAndText())
+                return true;
+        }
+        return false;
+    }
+
+    @Benchmark
+    public int findById() {
+        return mStore.indexOf(mStore.findById(tabCount / 2));
+    }
+
+    @Benchmark
+    public int insertAndRemoveFirst() {
+        // Positions go stale without being renumbered as long as nobody reads them
+        final Tab tab = mStore.remove(0);
+        mStore.add(0, tab);
+        return mStore.size();
+    }
+
+    private static final class Tab extends TabStore.Entry {
+        private final long mId;
+        private final boolean mHasIconAndText;
+
+        Tab(long id, boolean hasIconAndText) {
+            mId = id;
+            mHasIconAndText = hasIconAndText;
+        }
+
+        @Override
+        long getId() {
+            return mId;
+        }
+
+        @Override
+        boolean hasIconAndText() {
+            return mHasIconAndText;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.thea.widget.tablayout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The text fitting cache consulted by every {@link TabView} measure pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TextMeasureCacheBenchmark {
+    private static final CharSequence TEXT = "Favorites";
+    private static final int EXACTLY = 1 << 30;
+    private static final int AT_MOST = 2 << 30;
+    private static final int PADDING = 24;
+
+    private final TextMeasureCache mCache = new TextMeasureCache();
+
+    @Setup
+    public void setUp() {
+        mCache.put(TEXT, AT_MOST | 1080, PADDING, 42f, 36f, 2, 0, 42f, 1);
+        mCache.put(TEXT, EXACTLY | 270, PADDING, 42f, 36f, 2, 0, 36f, 2);
+    }
+
+    @Benchmark
+    public float hit() {
+        final int index = mCache.indexOf(TEXT, EXACTLY | 270, PADDING, 42f, 36f, 2, 0);
+        return mCache.getTextSize(index);
+    }
+
+    @Benchmark
+    public int miss() {
+        return mCache.indexOf(TEXT, EXACTLY | 360, PADDING, 42f, 36f, 2, 0);
+    }
+
+    @Benchmark
+    public int putAndEvict() {
+        // More width specs than entries, as when a parent measures the tabs repeatedly
+        for (int width = 200; width < 300; width += 10)
+            mCache.put(TEXT, EXACTLY | width, PADDING, 42f, 36f, 2, 0, 36f, 2);
+        return mCache.indexOf(TEXT, EXACTLY | 290, PADDING, 42f, 36f, 2, 0);
+    }
+}
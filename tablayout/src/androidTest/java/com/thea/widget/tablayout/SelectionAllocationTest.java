@@ -0,0 +1,165 @@
+package com.thea.widget.tablayout;
+
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.app.Instrumentation;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Clicks tabs and steps through the animations of every selection, which must allocate no more
+ * than the framework does for bare animators set up the same way: before API 24 starting and
+ * ending an animator with an {@link android.animation.Animator.AnimatorListener} copies its
+ * listener list.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SelectionAllocationTest {
+    private static final int TAB_COUNT = 12;
+    private static final int FRAMES = 20;
+    private static final int WARM_UP_SELECTIONS = 200;
+    private static final int SELECTIONS = 100;
+
+    @Rule
+    public final ActivityTestRule<TabLayoutTestActivity> mActivityRule =
+            new ActivityTestRule<>(TabLayoutTestActivity.class);
+
+    private BottomTabLayout mTabLayout;
+    private ValueAnimator mBareScrollAnimator;
+    private ValueAnimator mBareIndicatorAnimator;
+    private ValueAnimator mBareSelectedAnimator;
+    private int mSteppedAnimators;
+
+    private static Object sSink;
+
+    @Before
+    public void setUp() {
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mTabLayout = mActivityRule.getActivity().getTabLayout();
+                for (int i = 0; i < TAB_COUNT; i++)
+                    mTabLayout.addTab(mTabLayout.newTab()
+                            .setIcon(new ColorDrawable(Color.GRAY)).setText("Tab " + i));
+
+                mBareScrollAnimator = newBareAnimator();
+                mBareIndicatorAnimator = newBareAnimator();
+                mBareIndicatorAnimator.addListener(new AnimatorListenerAdapter() {
+                });
+                mBareSelectedAnimator = newBareAnimator();
+            }
+        });
+        // Let the tabs be laid out, selections only animate once they are
+        instrumentation.waitForIdleSync();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TAB_COUNT; i++) {
+                    // Clicks would play a sound through the audio service otherwise
+                    mTabLayout.getTabViewAt(i).setSoundEffectsEnabled(false);
+                }
+            }
+        });
+    }
+
+    private static ValueAnimator newBareAnimator() {
+        final ValueAnimator animator = new ValueAnimator();
+        animator.setFloatValues(0, 1);
+        animator.setDuration(300);
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animator) {
+            }
+        });
+        return animator;
+    }
+
+    /**
+     * Click the first or last tab, which always scrolls the strip, and run every animation it
+     * starts to its end.
+     */
+    private void select(int selection) {
+        mTabLayout.getTabViewAt(selection % 2 == 0 ? TAB_COUNT - 1 : 0).performClick();
+        step(mTabLayout.getScrollAnimator());
+        step(mTabLayout.getIndicatorAnimator());
+        step(mTabLayout.getSelectedAnimator());
+    }
+
+    private void selectBare() {
+        mBareScrollAnimator.start();
+        mBareIndicatorAnimator.start();
+        mBareSelectedAnimator.start();
+        step(mBareScrollAnimator);
+        step(mBareIndicatorAnimator);
+        step(mBareSelectedAnimator);
+    }
+
+    private void step(ValueAnimator animator) {
+        if (animator == null || !animator.isRunning())
+            return;
+        mSteppedAnimators++;
+        final long duration = animator.getDuration();
+        for (int frame = 1; frame < FRAMES; frame++)
+            animator.setCurrentPlayTime(duration * frame / FRAMES);
+        animator.end();
+    }
+
+    @Test
+    public void selectionAllocatesNoMoreThanItsAnimators() {
+        final int[] allocations = new int[2];
+        final int[] steppedAnimators = new int[2];
+        final boolean[] counted = new boolean[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Warm up so every animator, listener and lazily grown list exists
+                for (int i = 0; i < WARM_UP_SELECTIONS; i++) {
+                    select(i);
+                    selectBare();
+                }
+
+                Debug.startAllocCounting();
+                try {
+                    Debug.resetThreadAllocCount();
+                    sSink = new Object();
+                    counted[0] = Debug.getThreadAllocCount() > 0;
+
+                    mSteppedAnimators = 0;
+                    Debug.resetThreadAllocCount();
+                    for (int i = 0; i < SELECTIONS; i++)
+                        select(i);
+                    allocations[0] = Debug.getThreadAllocCount();
+                    steppedAnimators[0] = mSteppedAnimators;
+
+                    mSteppedAnimators = 0;
+                    Debug.resetThreadAllocCount();
+                    for (int i = 0; i < SELECTIONS; i++)
+                        selectBare();
+                    allocations[1] = Debug.getThreadAllocCount();
+                    steppedAnimators[1] = mSteppedAnimators;
+                } finally {
+                    Debug.stopAllocCounting();
+                }
+            }
+        });
+
+        // Failures on the main thread would crash the app, check everything here
+        assumeTrue("Allocations aren't counted on this runtime", counted[0]);
+        // Every selection has to scroll, move the indicator and scale the icon
+        assertEquals(3 * SELECTIONS, steppedAnimators[0]);
+        assertEquals(steppedAnimators[1], steppedAnimators[0]);
+        assertEquals(allocations[1], allocations[0]);
+    }
+}
@@ -0,0 +1,18 @@
+package com.thea.widget.tablayout;
+
+import android.app.Activity;
+import android.os.Bundle;
+
+import com.thea.widget.tablayout.test.R;
+
+public class TabLayoutTestActivity extends Activity {
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_tab_layout_test);
+    }
+
+    public BottomTabLayout getTabLayout() {
+        return (BottomTabLayout) findViewById(R.id.tabs);
+    }
+}
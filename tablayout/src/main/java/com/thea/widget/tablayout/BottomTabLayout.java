@@ -1,34 +1,37 @@
 package com.thea.widget.tablayout;
 
 import android.animation.Animator;
-import android.animation.AnimatorInflater;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
+import android.animation.LayoutTransition;
 import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
-import android.content.res.Resources;
-import android.content.res.TypedArray;
+import android.content.res.Configuration;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.os.Build;
 import android.support.annotation.NonNull;
-import android.support.v4.view.GravityCompat;
+import android.support.annotation.Nullable;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
 import android.support.v4.view.animation.FastOutSlowInInterpolator;
-import android.text.TextUtils;
+import android.text.TextPaint;
 import android.util.AttributeSet;
-import android.view.Gravity;
+import android.util.SparseArray;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.animation.Interpolator;
 import android.widget.FrameLayout;
 import android.widget.HorizontalScrollView;
 import android.widget.LinearLayout;
+import android.widget.TextView;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
 
 /**
  * Created by Thea on 2015/12/17 0017.
@@ -38,8 +41,16 @@ public class BottomTabLayout extends HorizontalScrollView {
     private static final int DEFAULT_HEIGHT_WITH_TEXT_ICON = 72; // dps
     private static final int DEFAULT_HEIGHT = 48; // dps
     private static final int TAB_MIN_WIDTH_MARGIN = 56; //dps
+    private static final int MOTION_NON_ADJACENT_OFFSET = 24; //dps
+    private static final int FIXED_WRAP_GUTTER_MIN = 16; //dps
     private static final int ANIMATION_DURATION = 300;
-    private static final int INVALID_WIDTH = -1;
+    static final int INVALID_WIDTH = -1;
+    private static final int SELECTED_ANIMATION_DURATION = 200;
+    private static final float SELECTED_ICON_SCALE = 1.5f;
+
+    // Stateless, so every layout and animator shares one
+    private static final Interpolator FAST_OUT_SLOW_IN_INTERPOLATOR =
+            new FastOutSlowInInterpolator();
 
     /**
      * Scrollable tabs display a subset of tabs at any given moment, and can contain longer tab
@@ -71,7 +82,8 @@ public class BottomTabLayout extends HorizontalScrollView {
     public static final int GRAVITY_FILL = 0;
 
     /**
-     * Gravity used to lay out the tabs in the center of the {@link BottomTabLayout}.
+     * Gravity used to lay out the tabs in the center of the {@link BottomTabLayout}. Tabs which
+     * don't fit centered are laid out as with {@link #GRAVITY_FILL} until they fit again.
      *
      * @see #setTabGravity(int)
      * @see #getTabGravity()
@@ -106,9 +118,30 @@ public class BottomTabLayout extends HorizontalScrollView {
         void onTabReselected(TabView.Tab tab);
     }
 
-    private final ArrayList<TabView.Tab> mTabs = new ArrayList<>();
+    /**
+     * Callback receiving the timings collected by a tab layout, see
+     * {@link #setOnMetricsListener(OnMetricsListener)}.
+     */
+    public interface OnMetricsListener {
+
+        /**
+         * Called on the main thread once a tab selection has been drawn and its indicator
+         * animation has finished, with every timing collected so far. Call
+         * {@link TabMetrics#reset()} after forwarding them to only receive new timings next time.
+         *
+         * @param metrics The histograms of the layout's operations
+         */
+        void onMetrics(TabMetrics metrics);
+    }
+
+    private final TabStore<TabView.Tab> mTabs = new TabStore<>();
     private TabView.Tab mSelectedTab;
 
+    // Batch state, see beginBatch(): nesting depth and the selection deferred until commit()
+    private int mBatchDepth;
+    private boolean mHasPendingSelection;
+    private TabView.Tab mPendingSelectedTab;
+
     private final SlidingTabStrip mTabStrip;
     private boolean mShowSelectedTabAnimation = false;
 
@@ -116,6 +149,8 @@ public class BottomTabLayout extends HorizontalScrollView {
     private int mTabPaddingTop;
     private int mTabPaddingEnd;
     private int mTabPaddingBottom;
+    // Bumped whenever the tab paddings or colors change, see getStyleGeneration()
+    private int mStyleGeneration;
 
     private int mTabTextAppearance;
     private ColorStateList mTabTextColors;
@@ -123,6 +158,16 @@ public class BottomTabLayout extends HorizontalScrollView {
     private float mTabTextMultiLineSize;
 
     private final int mTabBackgroundResId;
+    private final int mTabIconPlaceholderResId;
+    private boolean mAsyncIconLoadingEnabled;
+
+    // The dp constants above in pixels, only recomputed when the density changes
+    private float mDensity;
+    private int mDefaultHeightPx;
+    private int mDefaultHeightWithTextIconPx;
+    private int mTabMinWidthMarginPx;
+    private int mMotionNonAdjacentOffsetPx;
+    private int mFixedWrapGutterMinPx;
 
     private int mTabMaxWidth = Integer.MAX_VALUE;
     private final int mRequestedTabMinWidth;
@@ -133,12 +178,35 @@ public class BottomTabLayout extends HorizontalScrollView {
 
     private int mTabGravity;
     private int mMode;
+    private boolean mVirtualScrollingEnabled;
+    private boolean mLazyTabViewsEnabled;
+    private boolean mInflationFreeEnabled;
+    private boolean mFlatTabViewsEnabled;
 
     private OnTabSelectedListener mOnTabSelectedListener;
     private OnClickListener mTabClickListener;
 
+    // Only set while an OnMetricsListener is, every timing is skipped otherwise
+    private OnMetricsListener mOnMetricsListener;
+    private TabMetrics mMetrics;
+    private long mSelectionStartNanos;
+    private ViewTreeObserver.OnPreDrawListener mSelectionDrawListener;
+    private TabViewPool mTabViewPool = new TabViewPool();
+    private TabTextPrecomputer mTextPrecomputer;
+    // Paint of a tab label, created on first use
+    private TextPaint mTabLabelPaint;
+    private int mTabBadgeColor;
+    private int mTabBadgeTextColor;
+    private TabBadgeRenderer mBadgeRenderer;
+    // getDefaultHeight() as of the last measure
+    private int mMeasuredDefaultHeight;
+
     private ValueAnimator mScrollAnimator;
+    private int mScrollAnimationStartX;
+    private int mScrollAnimationTargetX;
     private ValueAnimator mIndicatorAnimator;
+    private ValueAnimator mSelectedAnimator;
+    private TabView mSelectedAnimationView;
 
     public BottomTabLayout(Context context) {
         this(context, null);
@@ -158,78 +226,98 @@ public class BottomTabLayout extends HorizontalScrollView {
         mTabStrip = new SlidingTabStrip(context);
         addView(mTabStrip, LayoutParams.WRAP_CONTENT, LayoutParams.MATCH_PARENT);
 
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.BottomTabLayout,
-                defStyleAttr, R.style.Widget_BottomTabLayout);
-
-        mShowSelectedTabAnimation = typedArray.getBoolean(
-                R.styleable.BottomTabLayout_showSelectedTabAnimation, false);
-        mTabStrip.setShowTabIndicator(typedArray.getBoolean(
-                R.styleable.BottomTabLayout_showTabIndicator, false));
-        mTabStrip.setTabIndicatorPosition(typedArray.getInt(
-                R.styleable.BottomTabLayout_tabIndicatorPosition, 0));
-        mTabStrip.setSelectedIndicatorHeight(
-                typedArray.getDimensionPixelSize(R.styleable.BottomTabLayout_tabIndicatorHeight, 0));
-        mTabStrip.setSelectedIndicatorColor(typedArray.getColor(R.styleable.BottomTabLayout_tabIndicatorColor, 0));
-
-        mTabPaddingStart = mTabPaddingTop = mTabPaddingEnd = mTabPaddingBottom =
-                typedArray.getDimensionPixelSize(R.styleable.BottomTabLayout_tabPadding, 0);
-        mTabPaddingStart = typedArray.getDimensionPixelSize(
-                R.styleable.BottomTabLayout_tabPaddingStart, mTabPaddingStart);
-        mTabPaddingTop = typedArray.getDimensionPixelSize(
-                R.styleable.BottomTabLayout_tabPaddingTop, mTabPaddingTop);
-        mTabPaddingEnd = typedArray.getDimensionPixelSize(
-                R.styleable.BottomTabLayout_tabPaddingEnd, mTabPaddingEnd);
-        mTabPaddingBottom = typedArray.getDimensionPixelSize(
-                R.styleable.BottomTabLayout_tabPaddingBottom, mTabPaddingBottom);
-
-        mTabTextAppearance = typedArray.getResourceId(R.styleable.BottomTabLayout_tabTextAppearance,
-                R.style.TextAppearance_Tab);
-
-        // Text colors/sizes come from the text appearance first
-        final TypedArray ta = context.obtainStyledAttributes(mTabTextAppearance,
-                R.styleable.TextAppearance);
-        try {
-            mTabTextSize = ta.getDimensionPixelSize(R.styleable.TextAppearance_android_textSize, 0);
-            mTabTextColors = ta.getColorStateList(R.styleable.TextAppearance_android_textColor);
-        } finally {
-            ta.recycle();
-        }
+        updateDensityConstants();
+        final TabStyle style = TabStyle.obtain(context, attrs, defStyleAttr);
+
+        mShowSelectedTabAnimation = style.showSelectedTabAnimation;
+        mTabStrip.setShowTabIndicator(style.showTabIndicator);
+        mTabStrip.setTabIndicatorPosition(style.tabIndicatorPosition);
+        mTabStrip.setSelectedIndicatorHeight(style.tabIndicatorHeight);
+        mTabStrip.setSelectedIndicatorColor(style.tabIndicatorColor);
+
+        mTabPaddingStart = style.tabPaddingStart;
+        mTabPaddingTop = style.tabPaddingTop;
+        mTabPaddingEnd = style.tabPaddingEnd;
+        mTabPaddingBottom = style.tabPaddingBottom;
+
+        mTabTextAppearance = style.tabTextAppearance;
+        mTabTextSize = style.tabTextSize;
+        mTabTextColors = style.tabTextColors;
+        mTabTextMultiLineSize = style.tabTextMultiLineSize;
+
+        mRequestedTabMinWidth = style.requestedTabMinWidth;
+        mRequestedTabMaxWidth = style.requestedTabMaxWidth;
+        mScrollableTabMinWidth = style.scrollableTabMinWidth;
+
+        mTabBackgroundResId = style.tabBackgroundResId;
+        mTabIconPlaceholderResId = style.tabIconPlaceholderResId;
+        mTabBadgeColor = style.tabBadgeColor;
+        mTabBadgeTextColor = style.tabBadgeTextColor;
+        mAsyncIconLoadingEnabled = style.asyncIconLoading;
+        mContentInsetStart = style.contentInsetStart;
+        mMode = style.mode;
+        mTabGravity = style.tabGravity;
+        mVirtualScrollingEnabled = style.virtualScrolling;
+        mLazyTabViewsEnabled = style.lazyTabViews;
+        mInflationFreeEnabled = style.inflationFree;
+        mFlatTabViewsEnabled = style.flatTabViews;
 
-        if (typedArray.hasValue(R.styleable.BottomTabLayout_tabTextColor))
-            mTabTextColors = typedArray.getColorStateList(R.styleable.BottomTabLayout_tabTextColor);
-
-        if (typedArray.hasValue(R.styleable.BottomTabLayout_tabSelectedTextColor)) {
-            final int selected = typedArray.getColor(
-                    R.styleable.BottomTabLayout_tabSelectedTextColor, 0);
-            mTabTextColors = createColorStateList(mTabTextColors.getDefaultColor(), selected);
-        }
-
-        mRequestedTabMinWidth = typedArray.getDimensionPixelSize(
-                R.styleable.BottomTabLayout_tabMinWidth, INVALID_WIDTH);
-        mRequestedTabMaxWidth = typedArray.getDimensionPixelSize(
-                R.styleable.BottomTabLayout_tabMaxWidth, INVALID_WIDTH);
+        applyModeAndGravity();
+        updateVirtualScrolling();
+        setPrecomputeTextEnabled(style.precomputeText);
 
-        mTabBackgroundResId = typedArray.getResourceId(
-                R.styleable.BottomTabLayout_tabBackground, 0);
-        mContentInsetStart = typedArray.getDimensionPixelSize(
-                R.styleable.BottomTabLayout_tabContentStart, 0);
-        mMode = typedArray.getInt(R.styleable.BottomTabLayout_tabMode, MODE_FIXED);
-        mTabGravity = typedArray.getInt(R.styleable.BottomTabLayout_tabGravity, GRAVITY_FILL);
+        mTabs.setContentObserver(new TabContentObserver(this));
+    }
 
-        typedArray.recycle();
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (updateDensityConstants()) {
+            // Badge sizes are in dp too
+            mBadgeRenderer = null;
+            requestLayout();
+        }
+    }
 
-        final Resources res = getResources();
-        mTabTextMultiLineSize = res.getDimensionPixelSize(R.dimen.tab_text_size_2line);
-        mScrollableTabMinWidth = res.getDimensionPixelSize(R.dimen.tab_scrollable_min_width);
+    @Override
+    protected void measureChildWithMargins(View child, int parentWidthMeasureSpec, int widthUsed,
+            int parentHeightMeasureSpec, int heightUsed) {
+        if (mMode == MODE_FIXED
+                && MeasureSpec.getMode(parentWidthMeasureSpec) == MeasureSpec.EXACTLY) {
+            // Fixed tabs end up exactly as wide as we are, measure them at that width right away
+            // rather than unbounded first and then again in onMeasure()
+            child.measure(parentWidthMeasureSpec, getChildMeasureSpec(parentHeightMeasureSpec,
+                    getPaddingTop() + getPaddingBottom(), child.getLayoutParams().height));
+            return;
+        }
+        super.measureChildWithMargins(child, parentWidthMeasureSpec, widthUsed,
+                parentHeightMeasureSpec, heightUsed);
+    }
 
-        applyModeAndGravity();
+    /**
+     * Convert the dp constants to pixels if the density changed since the last time.
+     *
+     * @return Whether the density changed
+     */
+    private boolean updateDensityConstants() {
+        final float density = getResources().getDisplayMetrics().density;
+        if (density == mDensity)
+            return false;
+        mDensity = density;
+        mDefaultHeightPx = dpToPx(DEFAULT_HEIGHT);
+        mDefaultHeightWithTextIconPx = dpToPx(DEFAULT_HEIGHT_WITH_TEXT_ICON);
+        mTabMinWidthMarginPx = dpToPx(TAB_MIN_WIDTH_MARGIN);
+        mMotionNonAdjacentOffsetPx = dpToPx(MOTION_NON_ADJACENT_OFFSET);
+        mFixedWrapGutterMinPx = dpToPx(FIXED_WRAP_GUTTER_MIN);
+        return true;
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         // If we have a MeasureSpec which allows us to decide our height, try and use the default
         // height
-        final int idealHeight = dpToPx(getDefaultHeight()) + getPaddingTop() + getPaddingBottom();
+        mMeasuredDefaultHeight = getDefaultHeight();
+        final int idealHeight = mMeasuredDefaultHeight + getPaddingTop() + getPaddingBottom();
         switch (MeasureSpec.getMode(heightMeasureSpec)) {
             case MeasureSpec.AT_MOST:
                 heightMeasureSpec = MeasureSpec.makeMeasureSpec(
@@ -247,7 +335,7 @@ public class BottomTabLayout extends HorizontalScrollView {
             // the max tab width
             mTabMaxWidth = mRequestedTabMaxWidth > 0
                     ? mRequestedTabMaxWidth
-                    : specWidth - dpToPx(TAB_MIN_WIDTH_MARGIN);
+                    : specWidth - mTabMinWidthMarginPx;
         }
 
         // Now super measure itself using the (possibly) modified height spec
@@ -282,6 +370,12 @@ public class BottomTabLayout extends HorizontalScrollView {
         }
     }
 
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        mTabStrip.onViewportChanged();
+    }
+
     /**
      * Add a tab to this layout. The tab will be added at the end of the list.
      * If this is the first tab to be added it will become the selected tab.
@@ -319,10 +413,12 @@ public class BottomTabLayout extends HorizontalScrollView {
      * @param tab The tab to add
      * @param position The new position of the tab
      * @param setSelected True if the added tab should become the selected tab.
+     * @throws IllegalStateException If the tab is in another layout
      */
     public void addTab(@NonNull TabView.Tab tab, int position, boolean setSelected) {
-        mTabStrip.addTabView(tab, position, setSelected);
+        // Store the tab first, it throws if the tab is still in another layout
         configureTab(tab, position);
+        mTabStrip.addTabView(tab, position, setSelected);
         if (setSelected)
             selectTab(tab);
     }
@@ -334,7 +430,7 @@ public class BottomTabLayout extends HorizontalScrollView {
      * @param tab The tab to remove
      */
     public TabView.Tab removeTab(TabView.Tab tab) {
-        return removeTabAt(tab.getPosition());
+        return removeTabAt(getTabPosition(tab));
     }
 
     /**
@@ -344,38 +440,245 @@ public class BottomTabLayout extends HorizontalScrollView {
      * @param position Position of the tab to remove
      */
     public TabView.Tab removeTabAt(int position) {
-        final int selectedTabPosition = mSelectedTab != null ? mSelectedTab.getPosition() : 0;
+        final TabView.Tab selectedTab = mHasPendingSelection ? mPendingSelectedTab : mSelectedTab;
+        final boolean removeSelected = selectedTab != null
+                ? selectedTab == mTabs.get(position)
+                : position == 0;
         removeTabViewAt(position);
 
         TabView.Tab removedTab = mTabs.remove(position);
-        if (removedTab != null) {
-            removedTab.setPosition(TabView.Tab.INVALID_POSITION);
-        }
 
-        final int newTabCount = mTabs.size();
-        for (int i = position; i < newTabCount; i++)
-            mTabs.get(i).setPosition(i);
-
-        if (selectedTabPosition == position)
+        if (removeSelected)
             selectTab(mTabs.isEmpty() ? null : mTabs.get(Math.max(0, position - 1)));
 
         return removedTab;
     }
 
+    /**
+     * Move a tab from one position to another, keeping its view and selection state.
+     *
+     * @param fromPosition Current position of the tab
+     * @param toPosition The new position of the tab
+     */
+    public void moveTab(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition)
+            return;
+        mTabStrip.moveTabView(fromPosition, toPosition);
+        mTabs.move(fromPosition, toPosition);
+    }
+
+    /**
+     * Replace all tabs of this layout with <code>tabs</code> in a single batch, so positions are
+     * assigned once, the tabs are laid out once and the first tab is selected with one callback.
+     *
+     * @param tabs The new tabs
+     */
+    public void setTabs(@NonNull List<TabView.Tab> tabs) {
+        beginBatch();
+        try {
+            removeAllTabs();
+            for (int i = 0, count = tabs.size(); i < count; i++)
+                addTab(tabs.get(i), i, i == 0);
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Apply <code>spec</code>: its settings, then its tabs in place of the current ones, in a
+     * single batch. Nothing is resolved from attributes again, settings the spec doesn't set
+     * keep their current value.
+     *
+     * @param spec The spec to apply, may be shared with other layouts
+     */
+    public void setTabBarSpec(@NonNull TabBarSpec spec) {
+        if (spec.isSet(TabBarSpec.SET_MODE))
+            mMode = spec.mode;
+        if (spec.isSet(TabBarSpec.SET_GRAVITY))
+            mTabGravity = spec.tabGravity;
+        if (spec.isSet(TabBarSpec.SET_PADDING)) {
+            mTabPaddingStart = spec.tabPaddingStart;
+            mTabPaddingTop = spec.tabPaddingTop;
+            mTabPaddingEnd = spec.tabPaddingEnd;
+            mTabPaddingBottom = spec.tabPaddingBottom;
+            mStyleGeneration++;
+        }
+        if (spec.isSet(TabBarSpec.SET_TEXT_COLORS)) {
+            mTabTextColors = spec.tabTextColors;
+            mStyleGeneration++;
+        }
+        if (spec.isSet(TabBarSpec.SET_SHOW_INDICATOR))
+            mTabStrip.setShowTabIndicator(spec.showTabIndicator);
+        if (spec.isSet(TabBarSpec.SET_INDICATOR_COLOR))
+            mTabStrip.setSelectedIndicatorColor(spec.tabIndicatorColor);
+        if (spec.isSet(TabBarSpec.SET_INDICATOR_HEIGHT))
+            mTabStrip.setSelectedIndicatorHeight(spec.tabIndicatorHeight);
+        if (spec.isSet(TabBarSpec.SET_INDICATOR_POSITION))
+            mTabStrip.setTabIndicatorPosition(spec.tabIndicatorPosition);
+
+        final List<TabBarSpec.TabSpec> tabSpecs = spec.getTabs();
+        final int count = tabSpecs.size();
+        beginBatch();
+        try {
+            removeAllTabs();
+            applyModeAndGravity();
+            updateVirtualScrolling();
+            for (int i = 0; i < count; i++)
+                addTab(newTab(tabSpecs.get(i)), i, i == spec.getSelectedPosition());
+        } finally {
+            commit();
+        }
+    }
+
+    private TabView.Tab newTab(TabBarSpec.TabSpec tabSpec) {
+        final TabView.Tab tab = newTab();
+        if (tabSpec.getIconUri() != null)
+            tab.setIcon(tabSpec.getIconUri());
+        else if (tabSpec.getIconResId() != 0)
+            tab.setIcon(tabSpec.getIconResId());
+        if (tabSpec.getTextResId() != 0)
+            tab.setText(tabSpec.getTextResId());
+        else
+            tab.setText(tabSpec.getText());
+        return tab.setId(tabSpec.getId());
+    }
+
+    /**
+     * Start a batch of tab changes. Until the matching {@link #commit()}, adding, removing and
+     * moving tabs doesn't request a layout, and selection changes are deferred. Batches may be
+     * nested, only the outermost commit applies them.
+     */
+    public void beginBatch() {
+        mBatchDepth++;
+    }
+
+    /**
+     * Apply the changes made since {@link #beginBatch()}: request a single layout and select
+     * the last tab selected during the batch, notifying the {@link OnTabSelectedListener} at
+     * most once.
+     */
+    public void commit() {
+        if (mBatchDepth == 0)
+            throw new IllegalStateException("commit() called without beginBatch()");
+        if (--mBatchDepth > 0)
+            return;
+
+        mTabStrip.requestLayout();
+        mTabStrip.invalidate();
+
+        if (mHasPendingSelection) {
+            TabView.Tab tab = mPendingSelectedTab;
+            mHasPendingSelection = false;
+            mPendingSelectedTab = null;
+            if (tab != null && tab.getPosition() == TabView.Tab.INVALID_POSITION)
+                // The tab was removed later in the batch, fall back to the first one
+                tab = mTabs.isEmpty() ? null : mTabs.get(0);
+            selectTab(tab);
+        }
+    }
+
+    public boolean isInBatch() {
+        return mBatchDepth > 0;
+    }
+
+    /**
+     * Update the tabs of this layout to <code>tabs</code> without animating the changes.
+     *
+     * @see #updateTabs(List, boolean)
+     */
+    public void updateTabs(@NonNull List<TabView.Tab> tabs) {
+        updateTabs(tabs, false);
+    }
+
+    /**
+     * Update the tabs of this layout to <code>tabs</code> by applying the minimal set of removals,
+     * moves and inserts. Tabs are matched by {@link TabView.Tab#getId()}; a matched tab replaces
+     * the current one and its view is only rebound if its text or icon changed. The selected
+     * tab stays selected if it is still present.
+     *
+     * @param tabs The new tabs, ids must be unique
+     * @param animate Whether to animate the tab views into their new places
+     */
+    public void updateTabs(@NonNull List<TabView.Tab> tabs, boolean animate) {
+        final ArrayList<TabView.Tab> oldTabs = mTabs.copyTabs();
+        final TabDiff diff = TabDiff.calculate(getTabKeys(oldTabs), getTabKeys(tabs));
+        final int newCount = tabs.size();
+
+        if (animate && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            mTabStrip.beginTabChangeTransition();
+
+        beginBatch();
+        try {
+            // Remove from the end so the positions of the tabs still to remove don't change
+            for (int i = oldTabs.size() - 1; i >= 0; i--) {
+                if (diff.isRemoved(i))
+                    removeTabAt(i);
+            }
+
+            // Put each moved tab right after the kept tab preceding it in the new order
+            for (int i = 0; i < newCount; i++) {
+                if (!diff.isMoved(i))
+                    continue;
+                final int from = mTabs.indexOf(oldTabs.get(diff.getOldPosition(i)));
+                int previous = -1;
+                for (int j = i - 1; j >= 0 && previous < 0; j--) {
+                    if (!diff.isInserted(j))
+                        previous = mTabs.indexOf(oldTabs.get(diff.getOldPosition(j)));
+                }
+                moveTab(from, previous < 0 ? 0 : (previous < from ? previous + 1 : previous));
+            }
+
+            for (int i = 0; i < newCount; i++) {
+                if (diff.isInserted(i))
+                    addTab(tabs.get(i), i, false);
+            }
+
+            // Take over the new tab objects of the kept tabs
+            for (int i = 0; i < newCount; i++) {
+                final TabView.Tab oldTab = mTabs.get(i);
+                final TabView.Tab newTab = tabs.get(i);
+                if (oldTab != newTab)
+                    replaceTab(i, oldTab, newTab);
+            }
+
+            if (mSelectedTab == null && !mHasPendingSelection && !mTabs.isEmpty())
+                selectTab(mTabs.get(0));
+        } finally {
+            commit();
+        }
+    }
+
+    private void replaceTab(int position, TabView.Tab oldTab, TabView.Tab newTab) {
+        mTabs.set(position, newTab);
+        if (mTextPrecomputer != null)
+            mTextPrecomputer.precompute(newTab);
+        if (mSelectedTab == oldTab)
+            mSelectedTab = newTab;
+        if (mPendingSelectedTab == oldTab)
+            mPendingSelectedTab = newTab;
+        mTabStrip.rebindTabView(position, oldTab, newTab);
+    }
+
+    private static List<Object> getTabKeys(List<TabView.Tab> tabs) {
+        final ArrayList<Object> keys = new ArrayList<>(tabs.size());
+        for (int i = 0, count = tabs.size(); i < count; i++) {
+            final TabView.Tab tab = tabs.get(i);
+            keys.add(tab.getId() != TabView.Tab.NO_ID ? tab.getId() : tab);
+        }
+        return keys;
+    }
+
     /**
      * Remove all tabs from the action bar and deselect the current tab.
      */
     public void removeAllTabs() {
         // Remove all the views
-        mTabStrip.removeAllViews();
-
-        for (Iterator<TabView.Tab> i = mTabs.iterator(); i.hasNext(); ) {
-            TabView.Tab tab = i.next();
-            tab.setPosition(TabView.Tab.INVALID_POSITION);
-            i.remove();
-        }
+        mTabStrip.removeAllTabViews();
+        mTabs.clear();
 
         mSelectedTab = null;
+        mHasPendingSelection = false;
+        mPendingSelectedTab = null;
     }
 
     /**
@@ -385,13 +688,26 @@ public class BottomTabLayout extends HorizontalScrollView {
      */
     @NonNull
     public TabView.Tab newTab() {
-        return new TabView.Tab(this.getContext());
+        return new TabView.Tab();
     }
 
     public TabView.Tab getTabAt(int position) {
         return mTabs.get(position);
     }
 
+    /**
+     * Returns the tab with the stable id <code>id</code>, see {@link TabView.Tab#setId(long)},
+     * or null if there is none.
+     */
+    @Nullable
+    public TabView.Tab getTabById(long id) {
+        return mTabs.findById(id);
+    }
+
+    public int getTabCount() {
+        return mTabs.size();
+    }
+
     /**
      * Set the {@link OnTabSelectedListener} that will
      * handle switching to and from tabs.
@@ -402,27 +718,134 @@ public class BottomTabLayout extends HorizontalScrollView {
         mOnTabSelectedListener = onTabSelectedListener;
     }
 
+    /**
+     * Set the {@link OnMetricsListener} receiving the timings of tab view creation, measure,
+     * layout and draw of the tabs, selections, scroll position updates and the frames dropped
+     * by indicator animations. Timings are only collected while a listener is set.
+     *
+     * @param onMetricsListener Listener receiving the timings, or null to stop collecting them
+     */
+    public void setOnMetricsListener(OnMetricsListener onMetricsListener) {
+        mOnMetricsListener = onMetricsListener;
+        if (onMetricsListener == null) {
+            mMetrics = null;
+            mSelectionStartNanos = 0;
+            if (mSelectionDrawListener != null)
+                getViewTreeObserver().removeOnPreDrawListener(mSelectionDrawListener);
+        } else if (mMetrics == null) {
+            mMetrics = new TabMetrics();
+        }
+    }
+
+    /**
+     * Returns the timings collected so far, or null if no {@link OnMetricsListener} is set.
+     */
+    public TabMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Record the latency of the current selection once the frame showing it starts drawing.
+     */
+    private void trackSelectionLatency(long startNanos) {
+        if (mSelectionDrawListener == null) {
+            mSelectionDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    getViewTreeObserver().removeOnPreDrawListener(this);
+                    if (mMetrics != null && mSelectionStartNanos != 0) {
+                        mMetrics.recordSince(TabMetrics.OP_SELECTION_LATENCY, mSelectionStartNanos);
+                        mSelectionStartNanos = 0;
+                        dispatchMetrics(mIndicatorAnimator != null
+                                && mIndicatorAnimator.isRunning());
+                    }
+                    return true;
+                }
+            };
+        }
+        if (mSelectionStartNanos == 0)
+            getViewTreeObserver().addOnPreDrawListener(mSelectionDrawListener);
+        mSelectionStartNanos = startNanos;
+    }
+
+    /**
+     * Hand the metrics to the listener, unless the current selection is still in progress.
+     */
+    private void dispatchMetrics(boolean indicatorAnimating) {
+        if (mOnMetricsListener != null && mSelectionStartNanos == 0 && !indicatorAnimating)
+            mOnMetricsListener.onMetrics(mMetrics);
+    }
+
     public void showSelectedAnimation(TabView tabView, boolean selected) {
-        if (tabView == null || tabView.getIconView() == null)
+        if (tabView == null || !tabView.hasIconShown())
             return;
         if (mShowSelectedTabAnimation && selected) {
-            AnimatorSet animatorSet = new AnimatorSet();
-            animatorSet.playTogether(
-                    ObjectAnimator.ofFloat(tabView.getIconView(), "scaleX", 1f, 1.5f, 1),
-                    ObjectAnimator.ofFloat(tabView.getIconView(), "scaleY", 1f, 1.5f, 1));
-            animatorSet.setDuration(200);
-            animatorSet.start();
+            if (mSelectedAnimator == null) {
+                mSelectedAnimator = ValueAnimator.ofFloat(0f, 1f);
+                mSelectedAnimator.setDuration(SELECTED_ANIMATION_DURATION);
+                mSelectedAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                    @Override
+                    public void onAnimationUpdate(ValueAnimator animator) {
+                        // The fraction avoids boxing the animated value on every frame
+                        mSelectedAnimationView.setIconScale(TabLayoutEngine.getSelectedIconScale(
+                                animator.getAnimatedFraction(), SELECTED_ICON_SCALE));
+                    }
+                });
+            } else if (mSelectedAnimator.isRunning()) {
+                // Let the previous icon settle back to its normal size
+                mSelectedAnimator.end();
+            }
+            mSelectedAnimationView = tabView;
+            mSelectedAnimator.start();
         }
     }
 
+    /**
+     * Returns the view of the tab at <code>position</code>, or null if it has none right now,
+     * see {@link #setLazyTabViewsEnabled(boolean)}.
+     */
+    TabView getTabViewAt(int position) {
+        return mTabStrip.getTabView(position);
+    }
+
+    /**
+     * Returns the animator scrolling to a newly selected tab. Like the other selection
+     * animators it's created on first use and reused after, tests step through them.
+     */
+    ValueAnimator getScrollAnimator() {
+        return mScrollAnimator;
+    }
+
+    /**
+     * Returns the animator moving the indicator to a newly selected tab.
+     */
+    ValueAnimator getIndicatorAnimator() {
+        return mIndicatorAnimator;
+    }
+
+    /**
+     * Returns the animator scaling the icon of a clicked tab.
+     */
+    ValueAnimator getSelectedAnimator() {
+        return mSelectedAnimator;
+    }
+
     public void selectTab(TabView.Tab tab) {
         if (tab == null)
             return;
+        if (mBatchDepth > 0) {
+            // Only the last selection of the batch is applied, in commit()
+            mHasPendingSelection = true;
+            mPendingSelectedTab = tab;
+            return;
+        }
         if (mSelectedTab == tab) {
             if (mOnTabSelectedListener != null)
                 mOnTabSelectedListener.onTabReselected(tab);
         }
         else {
+            final long start = mMetrics != null ? System.nanoTime() : 0;
+            mTabStrip.resetInvalidatedPixels();
             mTabStrip.setSelectedTabView(tab.getPosition());
             if (mSelectedTab != null && mOnTabSelectedListener != null)
                 mOnTabSelectedListener.onTabUnselected(mSelectedTab);
@@ -435,6 +858,10 @@ public class BottomTabLayout extends HorizontalScrollView {
                 animateToTab(tab.getPosition());
 
             mSelectedTab = tab;
+            if (mMetrics != null) {
+                mMetrics.recordSince(TabMetrics.OP_SELECT_TAB, start);
+                trackSelectionLatency(start);
+            }
         }
     }
 
@@ -464,29 +891,31 @@ public class BottomTabLayout extends HorizontalScrollView {
             throw new IllegalArgumentException("ViewPager does not have a PagerAdapter set");
         }
 
-        removeAllTabs();
-        if (tabs == null) {
-            for (int i = 0, count = adapter.getCount(); i < count; i++)
-                addTab(newTab().setText(adapter.getPageTitle(i)));
-        }
-        else {
-            int n = tabs.length;
-            for (int i = 0, count = adapter.getCount(); i < count; i++)
-                addTab(tabs[i % n]);
-        }
+        // Add all tabs in one batch so they are numbered and laid out once
+        beginBatch();
+        try {
+            removeAllTabs();
+            if (tabs == null) {
+                for (int i = 0, count = adapter.getCount(); i < count; i++)
+                    addTab(newTab().setText(adapter.getPageTitle(i)));
+            }
+            else {
+                int n = tabs.length;
+                for (int i = 0, count = adapter.getCount(); i < count; i++)
+                    addTab(tabs[i % n]);
+            }
 
-        // Now we'll add our page change listener to the ViewPager
-        viewPager.addOnPageChangeListener(new TabLayoutOnPageChangeListener(this));
+            // Now we'll add our page change listener to the ViewPager
+            viewPager.addOnPageChangeListener(new TabLayoutOnPageChangeListener(this));
 
-        // Now we'll add a tab selected listener to set ViewPager's current item
-        setOnTabSelectedListener(new ViewPagerOnTabSelectedListener(viewPager));
+            // Now we'll add a tab selected listener to set ViewPager's current item
+            setOnTabSelectedListener(new ViewPagerOnTabSelectedListener(viewPager));
 
-        // Make sure we reflect the currently set ViewPager item
-        if (adapter.getCount() > 0) {
-            final int curItem = viewPager.getCurrentItem();
-            if (getSelectedTabPosition() != curItem) {
-                selectTab(getTabAt(curItem));
-            }
+            // Make sure we reflect the currently set ViewPager item
+            if (adapter.getCount() > 0)
+                selectTab(getTabAt(viewPager.getCurrentItem()));
+        } finally {
+            commit();
         }
     }
 
@@ -504,17 +933,22 @@ public class BottomTabLayout extends HorizontalScrollView {
         if (mIndicatorAnimator != null && mIndicatorAnimator.isRunning()) {
             return;
         }
-        if (position < 0 || position >= mTabStrip.getChildCount()) {
+        if (position < 0 || position >= mTabStrip.getTabCount()) {
             return;
         }
+        final long start = mMetrics != null ? System.nanoTime() : 0;
 
         // Set the indicator position and update the scroll to match
         mTabStrip.setIndicatorPositionFromTabPosition(position, positionOffset);
-        scrollTo(calculateScrollXForTab(position, positionOffset), 0);
+        final int scrollX = calculateScrollXForTab(position, positionOffset);
+        if (scrollX != getScrollX())
+            scrollTo(scrollX, 0);
 
         // Update the 'selected state' view as we scroll
         if (updateSelectedText)
             mTabStrip.setSelectedTabView(Math.round(position + positionOffset));
+        if (mMetrics != null)
+            mMetrics.recordSince(TabMetrics.OP_SCROLL_POSITION, start);
     }
 
     private void animateToTab(int newPosition) {
@@ -536,17 +970,20 @@ public class BottomTabLayout extends HorizontalScrollView {
         if (startScrollX != targetScrollX) {
             if (mScrollAnimator == null) {
                 mScrollAnimator = new ValueAnimator();
-                mScrollAnimator.setInterpolator(new FastOutSlowInInterpolator());
+                mScrollAnimator.setInterpolator(FAST_OUT_SLOW_IN_INTERPOLATOR);
                 mScrollAnimator.setDuration(ANIMATION_DURATION);
+                mScrollAnimator.setFloatValues(0, 1);
                 mScrollAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
                     @Override
                     public void onAnimationUpdate(ValueAnimator animator) {
-                        scrollTo((Integer) animator.getAnimatedValue(), 0);
+                        scrollTo(lerp(mScrollAnimationStartX, mScrollAnimationTargetX,
+                                animator.getAnimatedFraction()), 0);
                     }
                 });
             }
 
-            mScrollAnimator.setIntValues(startScrollX, targetScrollX);
+            mScrollAnimationStartX = startScrollX;
+            mScrollAnimationTargetX = targetScrollX;
             mScrollAnimator.start();
         }
 
@@ -554,9 +991,33 @@ public class BottomTabLayout extends HorizontalScrollView {
         mTabStrip.animateIndicatorToPosition(newPosition, ANIMATION_DURATION);
     }
 
+    /**
+     * Returns the number of pixels invalidated by the tab layout since the last tab selection,
+     * including the selection's indicator animation. Meant for debugging redraw costs, scrolling
+     * and the views' own invalidations aren't counted.
+     */
+    public long getSelectionInvalidatedPixels() {
+        return mTabStrip.getInvalidatedPixels();
+    }
+
     public void removeTabViewAt(int position) {
-        mTabStrip.removeViewAt(position);
-        requestLayout();
+        // Removing the view already requests a layout of the strip and thus of us
+        mTabStrip.removeTabViewAt(position);
+    }
+
+    /**
+     * Set the pool which removed tabs release their {@link TabView}s into and added tabs take
+     * them from. Layouts in the same Activity may share one pool.
+     *
+     * @param pool The pool to use, must not be null
+     */
+    public void setTabViewPool(@NonNull TabViewPool pool) {
+        mTabViewPool = pool;
+    }
+
+    @NonNull
+    public TabViewPool getTabViewPool() {
+        return mTabViewPool;
     }
 
     public int getTabPaddingStart() {
@@ -575,6 +1036,14 @@ public class BottomTabLayout extends HorizontalScrollView {
         return mTabPaddingBottom;
     }
 
+    /**
+     * Returns a number which changes whenever the style {@link TabView}s take from this layout
+     * changes, so rebound views know to restyle themselves.
+     */
+    int getStyleGeneration() {
+        return mStyleGeneration;
+    }
+
     public int getTabTextAppearance() {
         return mTabTextAppearance;
     }
@@ -595,6 +1064,20 @@ public class BottomTabLayout extends HorizontalScrollView {
         return mTabBackgroundResId;
     }
 
+    public int getTabIconPlaceholderResId() {
+        return mTabIconPlaceholderResId;
+    }
+
+    /**
+     * Returns the renderer drawing the badges of our tabs, created once a tab has a badge.
+     */
+    TabBadgeRenderer getBadgeRenderer() {
+        if (mBadgeRenderer == null)
+            mBadgeRenderer = new TabBadgeRenderer(getResources(), mTabBadgeColor,
+                    mTabBadgeTextColor);
+        return mBadgeRenderer;
+    }
+
     public int getTabGravity() {
         return mTabGravity;
     }
@@ -617,11 +1100,136 @@ public class BottomTabLayout extends HorizontalScrollView {
     }
 
     public void setTabGravity(int mTabGravity) {
+        if (this.mTabGravity == mTabGravity)
+            return;
         this.mTabGravity = mTabGravity;
+        applyModeAndGravity();
     }
 
     public void setTabMode(int mMode) {
+        if (this.mMode == mMode)
+            return;
         this.mMode = mMode;
+        applyModeAndGravity();
+        updateVirtualScrolling();
+    }
+
+    /**
+     * Set whether {@link #MODE_SCROLLABLE} only keeps {@link TabView}s for the tabs inside the
+     * visible area, recycling the others as the user scrolls. Useful for hundreds of tabs.
+     * Tabs are laid out left-to-right in this mode.
+     */
+    public void setVirtualScrollingEnabled(boolean enabled) {
+        mVirtualScrollingEnabled = enabled;
+        updateVirtualScrolling();
+    }
+
+    public boolean isVirtualScrollingEnabled() {
+        return mVirtualScrollingEnabled;
+    }
+
+    /**
+     * Set whether the {@link TabView} of a tab is only created once the tab is laid out within
+     * the visible area, so tabs which are never shown stay plain {@link TabView.Tab} data.
+     * Their icons aren't loaded either, measuring the widths of such tabs only binds their
+     * labels. {@link #getTabAt(int)} and {@link #selectTab(TabView.Tab)} work the same either
+     * way. In {@link #MODE_SCROLLABLE} this also recycles the views of tabs scrolled out of
+     * sight, see {@link #setVirtualScrollingEnabled(boolean)}.
+     */
+    public void setLazyTabViewsEnabled(boolean enabled) {
+        mLazyTabViewsEnabled = enabled;
+        updateVirtualScrolling();
+    }
+
+    public boolean isLazyTabViewsEnabled() {
+        return mLazyTabViewsEnabled;
+    }
+
+    /**
+     * Set whether the icon and text views of new {@link TabView}s are built in code instead of
+     * being inflated from <code>layout_tab_icon</code> and <code>layout_tab_text</code>, which
+     * saves parsing the layouts for every tab. Views which already exist are kept.
+     */
+    public void setInflationFreeEnabled(boolean enabled) {
+        if (mInflationFreeEnabled != enabled) {
+            mInflationFreeEnabled = enabled;
+            // Labels built the other way may have another typeface or letter spacing, measure
+            // them again with their own paint
+            mTabLabelPaint = null;
+            if (mTextPrecomputer != null) {
+                setPrecomputeTextEnabled(false);
+                setPrecomputeTextEnabled(true);
+            }
+        }
+    }
+
+    public boolean isInflationFreeEnabled() {
+        return mInflationFreeEnabled;
+    }
+
+    /**
+     * Set whether new {@link TabView}s draw their icon and label themselves instead of holding
+     * an icon and a text view, so every tab is a single view to measure, lay out and draw.
+     * Flat tabs keep the text colors, selection state and accessibility of regular ones, but
+     * {@link TabView#getIconView()} returns null for them. Views which already exist are kept.
+     */
+    public void setFlatTabViewsEnabled(boolean enabled) {
+        mFlatTabViewsEnabled = enabled;
+    }
+
+    public boolean isFlatTabViewsEnabled() {
+        return mFlatTabViewsEnabled;
+    }
+
+    /**
+     * Set whether tab labels are measured on a background thread as soon as tabs are added, so
+     * that measuring a {@link TabView} doesn't have to lay its label out twice to pick the
+     * text size. Tabs measured before their label is ready fall back to the regular path.
+     */
+    public void setPrecomputeTextEnabled(boolean enabled) {
+        if (enabled == (mTextPrecomputer != null))
+            return;
+        if (enabled) {
+            mTextPrecomputer = new TabTextPrecomputer(getContext(), getTabLabelPaint(),
+                    mInflationFreeEnabled, mTabTextSize, mTabTextMultiLineSize,
+                    getResources().getConfiguration().locale);
+            for (int i = 0, count = mTabs.size(); i < count; i++)
+                mTextPrecomputer.precompute(mTabs.get(i));
+        } else {
+            mTextPrecomputer = null;
+        }
+    }
+
+    public boolean isPrecomputeTextEnabled() {
+        return mTextPrecomputer != null;
+    }
+
+    /**
+     * Returns the paint of a tab label, with its text appearance and typeface. Users which
+     * change it must copy it first.
+     */
+    TextPaint getTabLabelPaint() {
+        if (mTabLabelPaint == null) {
+            // Measure with the paint the tab labels will actually use
+            final TextView label = TabView.createTextView(getContext(), this,
+                    mInflationFreeEnabled);
+            mTabLabelPaint = label.getPaint();
+        }
+        return mTabLabelPaint;
+    }
+
+    /**
+     * Set whether icons set by resource id are loaded on a background thread when their tab is
+     * displayed, showing the <code>tabIconPlaceholder</code> meanwhile. Loaded icons are cached
+     * by the {@link TabIconLoader} shared by all layouts. Icons set by Uri are always loaded in
+     * the background.
+     */
+    public void setAsyncIconLoadingEnabled(boolean enabled) {
+        mAsyncIconLoadingEnabled = enabled;
+    }
+
+    public boolean isAsyncIconLoadingEnabled() {
+        return mAsyncIconLoadingEnabled;
     }
 
     /**
@@ -630,7 +1238,7 @@ public class BottomTabLayout extends HorizontalScrollView {
      * @return selected tab position, or {@code -1} if there isn't a selected tab.
      */
     public int getSelectedTabPosition() {
-        return mSelectedTab != null ? mSelectedTab.getPosition() : -1;
+        return mSelectedTab != null ? getTabPosition(mSelectedTab) : -1;
     }
 
     private void applyModeAndGravity() {
@@ -641,32 +1249,62 @@ public class BottomTabLayout extends HorizontalScrollView {
         }
         ViewCompat.setPaddingRelative(mTabStrip, paddingStart, 0, 0, 0);
 
-        switch (mMode) {
-            case MODE_FIXED:
-                mTabStrip.setGravity(Gravity.CENTER_HORIZONTAL);
-                break;
-            case MODE_SCROLLABLE:
-                mTabStrip.setGravity(GravityCompat.START);
-                break;
-        }
-
+        // Fixed tabs are centered by the strip's layout engine
         mTabStrip.updateTabViews(true);
     }
 
+    private void updateVirtualScrolling() {
+        mTabStrip.setVirtualized(mLazyTabViewsEnabled
+                || (mVirtualScrollingEnabled && mMode == MODE_SCROLLABLE));
+    }
+
     private void configureTab(TabView.Tab tab, int position) {
-        tab.setPosition(position);
         mTabs.add(position, tab);
+        if (mTextPrecomputer != null)
+            mTextPrecomputer.precompute(tab);
+    }
 
-        final int count = mTabs.size();
-        for (int i = position + 1; i < count; i++)
-            mTabs.get(i).setPosition(i);
+    private void onTabContentChanged(TabView.Tab tab, int changes) {
+        if (mTextPrecomputer != null && (changes & TabView.Tab.CHANGED_TEXT) != 0)
+            mTextPrecomputer.precompute(tab);
+        mTabStrip.onTabContentChanged(mTabs.indexOf(tab), tab, changes);
+        // The first or last tab with both an icon and a text changes our height
+        if (getDefaultHeight() != mMeasuredDefaultHeight)
+            requestLayout();
+    }
+
+    /**
+     * Returns the position of <code>tab</code>, or {@link TabView.Tab#INVALID_POSITION} if it
+     * isn't one of ours.
+     */
+    private int getTabPosition(TabView.Tab tab) {
+        return mTabs.indexOf(tab);
+    }
+
+    private TabView obtainTabView(TabView.Tab tab) {
+        final long start = mMetrics != null ? System.nanoTime() : 0;
+        TabView tabView = mTabViewPool.acquire(getContext(), mFlatTabViewsEnabled);
+        if (tabView == null) {
+            tabView = createTabView(tab);
+        } else {
+            tabView.bind(tab, this);
+            tabView.setMinimumWidth(getTabMinWidth());
+            tabView.setOnClickListener(getTabClickListener());
+        }
+        if (mMetrics != null)
+            mMetrics.recordSince(TabMetrics.OP_TAB_VIEW_CREATION, start);
+        return tabView;
     }
 
     private TabView createTabView(final TabView.Tab tab) {
         final TabView tabView = new TabView(getContext(), tab, this);
         tabView.setFocusable(true);
         tabView.setMinimumWidth(getTabMinWidth());
+        tabView.setOnClickListener(getTabClickListener());
+        return tabView;
+    }
 
+    private OnClickListener getTabClickListener() {
         if (mTabClickListener == null) {
             mTabClickListener = new OnClickListener() {
                 @Override
@@ -677,40 +1315,22 @@ public class BottomTabLayout extends HorizontalScrollView {
                 }
             };
         }
-        tabView.setOnClickListener(mTabClickListener);
-        return tabView;
+        return mTabClickListener;
     }
 
+    /**
+     * Returns the height in pixels we'd like to have, taller if any tab has an icon and a text.
+     */
     private int getDefaultHeight() {
-        boolean hasIconAndText = false;
-        for (int i = 0, count = mTabs.size(); i < count; i++) {
-            TabView.Tab tab = mTabs.get(i);
-            if (tab != null && tab.getIcon() != null && !TextUtils.isEmpty(tab.getText())) {
-                hasIconAndText = true;
-                break;
-            }
-        }
-        return hasIconAndText ? DEFAULT_HEIGHT_WITH_TEXT_ICON : DEFAULT_HEIGHT;
+        return mTabs.hasIconAndText() ? mDefaultHeightWithTextIconPx : mDefaultHeightPx;
     }
 
     private int calculateScrollXForTab(int position, float positionOffset) {
-        if (mMode == MODE_SCROLLABLE) {
-            final View selectedChild = mTabStrip.getChildAt(position);
-            final View nextChild = position + 1 < mTabStrip.getChildCount()
-                    ? mTabStrip.getChildAt(position + 1)
-                    : null;
-            final int selectedWidth = selectedChild != null ? selectedChild.getWidth() : 0;
-            final int nextWidth = nextChild != null ? nextChild.getWidth() : 0;
-
-            return selectedChild.getLeft()
-                    + ((int) ((selectedWidth + nextWidth) * positionOffset * 0.5f))
-                    + (selectedChild.getWidth() / 2)
-                    - (getWidth() / 2);
-        }
-        return 0;
+        return mTabStrip.getLayoutEngine().calculateScrollX(mMode, position, positionOffset,
+                getWidth());
     }
 
-    private static ColorStateList createColorStateList(int defaultColor, int selectedColor) {
+    static ColorStateList createColorStateList(int defaultColor, int selectedColor) {
         final int[][] states = new int[2][];
         final int[] colors = new int[2];
         int i = 0;
@@ -727,12 +1347,13 @@ public class BottomTabLayout extends HorizontalScrollView {
     }
 
     private int dpToPx(int dps) {
-        return Math.round(getResources().getDisplayMetrics().density * dps);
+        return Math.round(mDensity * dps);
     }
 
     class SlidingTabStrip extends LinearLayout {
-        private static final int MOTION_NON_ADJACENT_OFFSET = 24;
-        private static final int FIXED_WRAP_GUTTER_MIN = 16; //dps
+        private static final int VIRTUAL_OVERSCAN_TABS = 2;
+        // Frame interval of a 60Hz display, used to count dropped indicator animation frames
+        private static final long FRAME_INTERVAL_NANOS = 1000000000L / 60;
 
         private boolean mShowTabIndicator = true;
         private int mTabIndicatorPosition = 0;
@@ -740,29 +1361,74 @@ public class BottomTabLayout extends HorizontalScrollView {
         private int mIndicatorLeft = -1;
         private int mIndicatorRight = -1;
         private final Paint mSelectedIndicatorPaint = new Paint();
-
-        private ValueAnimator mCurrentAnimator;
+        // Drawn in the strip's overlay when available, null when draw() paints the indicator
+        private TabIndicatorView mIndicatorView;
+        // Pixels invalidated since the last selection, for debugging
+        private long mInvalidatedPixels;
+
+        // Reused by every indicator animation, see animateIndicatorToPosition()
+        private final IndicatorAnimatorListener mIndicatorAnimatorListener =
+                new IndicatorAnimatorListener();
+        private int mIndicatorStartLeft;
+        private int mIndicatorStartRight;
+        private int mIndicatorTargetLeft;
+        private int mIndicatorTargetRight;
+        private int mIndicatorTargetPosition;
 
         private int mSelectedPosition = -1;
         private float mSelectionOffset;
 
+        private final TabLayoutEngine mLayoutEngine = new TabLayoutEngine();
+        private final TabExtents mExtents = mLayoutEngine.getExtents();
+        // Content widths of the tabs handed to the layout engine, reused across measures
+        private int[] mContentWidths = new int[16];
+
+        // Only used when virtualized: the attached TabViews keyed by tab position and an
+        // unattached view used to measure tab widths
+        private boolean mVirtualized;
+        private final SparseArray<TabView> mActiveViews = new SparseArray<>();
+        private TabView mMeasuringView;
+        private int mChildHeightMeasureSpec;
+        private int mMeasuredTabMaxWidth;
+        private int mMeasuredTabMinWidth;
+        private int mContentWidthMeasureSpec;
+        // Content widths of the tabs, kept across measures since most tabs have no view
+        private final TabExtents mContentExtents = new TabExtents();
+
         public SlidingTabStrip(Context context) {
             super(context);
-            setWillNotDraw(false);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+                addIndicatorView();
+            else
+                setWillNotDraw(false);
+        }
+
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+        private void addIndicatorView() {
+            mIndicatorView = new TabIndicatorView(getContext());
+            mIndicatorView.setBackgroundColor(mSelectedIndicatorPaint.getColor());
+            mIndicatorView.setHorizontalBounds(mIndicatorLeft, mIndicatorRight);
+            getOverlay().add(mIndicatorView);
         }
 
         public void setShowTabIndicator(boolean showTabIndicator) {
             mShowTabIndicator = showTabIndicator;
+            if (mIndicatorView != null)
+                updateIndicatorView();
         }
 
         public void setTabIndicatorPosition(int tabIndicatorPosition) {
             mTabIndicatorPosition = tabIndicatorPosition;
+            if (mIndicatorView != null)
+                updateIndicatorView();
         }
 
         public void setSelectedIndicatorHeight(int height) {
             if (mSelectedIndicatorHeight != height) {
                 mSelectedIndicatorHeight = height;
-                if (mShowTabIndicator)
+                if (mIndicatorView != null)
+                    updateIndicatorView();
+                else if (mShowTabIndicator)
                     ViewCompat.postInvalidateOnAnimation(this);
             }
         }
@@ -770,103 +1436,511 @@ public class BottomTabLayout extends HorizontalScrollView {
         public void setSelectedIndicatorColor(int color) {
             if (mSelectedIndicatorPaint.getColor() != color) {
                 mSelectedIndicatorPaint.setColor(color);
-                if (mShowTabIndicator)
+                if (mIndicatorView != null)
+                    mIndicatorView.setBackgroundColor(color);
+                else if (mShowTabIndicator)
                     ViewCompat.postInvalidateOnAnimation(this);
             }
         }
 
+        /**
+         * Sync the overlay indicator view with the indicator's position, size and visibility.
+         */
+        private void updateIndicatorView() {
+            if (!mShowTabIndicator) {
+                mIndicatorView.setHorizontalBounds(-1, -1);
+                return;
+            }
+            mIndicatorView.layoutVertically(getIndicatorTop(), getIndicatorBottom());
+            mIndicatorView.setHorizontalBounds(mIndicatorLeft, mIndicatorRight);
+        }
+
         public void addTabView(TabView.Tab tab, int position, boolean setSelected) {
-            final TabView tabView = createTabView(tab);
-            addView(tabView, position, createLayoutParamsForTabs());
-            if (setSelected)
+            if (mSelectedPosition >= position)
+                mSelectedPosition++;
+
+            if (mVirtualized) {
+                // The view is only created once the tab is laid out within the viewport
+                mExtents.insert(position, TabExtents.INVALID_WIDTH);
+                mContentExtents.insert(position, TabExtents.INVALID_WIDTH);
+                offsetActiveViews(position, 1);
+                if (mBatchDepth == 0)
+                    requestLayout();
+                return;
+            }
+
+            final TabView tabView = obtainTabView(tab);
+            if (mBatchDepth > 0)
+                // The layout is requested once when the batch is committed
+                addViewInLayout(tabView, position, createLayoutParamsForTabs(), true);
+            else
+                addView(tabView, position, createLayoutParamsForTabs());
+            // Selections within a batch are only applied by commit(), which deselects the
+            // previous tab through mSelectedPosition
+            if (setSelected && mBatchDepth == 0)
                 tabView.setSelected(true);
         }
 
+        public void removeTabViewAt(int position) {
+            if (mSelectedPosition == position)
+                mSelectedPosition = -1;
+            else if (mSelectedPosition > position)
+                mSelectedPosition--;
+
+            if (mVirtualized) {
+                mExtents.remove(position);
+                mContentExtents.remove(position);
+                final TabView tabView = mActiveViews.get(position);
+                if (tabView != null) {
+                    mActiveViews.remove(position);
+                    removeViewInLayout(tabView);
+                    recycleTabView(tabView);
+                }
+                offsetActiveViews(position + 1, -1);
+                if (mBatchDepth == 0)
+                    requestLayout();
+                return;
+            }
+
+            final TabView tabView = getTabView(position);
+            if (mBatchDepth > 0)
+                removeViewInLayout(tabView);
+            else
+                removeViewAt(position);
+            recycleTabView(tabView);
+        }
+
+        public void moveTabView(int fromPosition, int toPosition) {
+            if (mSelectedPosition == fromPosition)
+                mSelectedPosition = toPosition;
+            else if (fromPosition < mSelectedPosition && mSelectedPosition <= toPosition)
+                mSelectedPosition--;
+            else if (toPosition <= mSelectedPosition && mSelectedPosition < fromPosition)
+                mSelectedPosition++;
+
+            if (mVirtualized) {
+                final int width = mExtents.getWidth(fromPosition);
+                mExtents.remove(fromPosition);
+                mExtents.insert(toPosition, width);
+                final int contentWidth = mContentExtents.getWidth(fromPosition);
+                mContentExtents.remove(fromPosition);
+                mContentExtents.insert(toPosition, contentWidth);
+                // Let the next layout attach the views at their new positions
+                for (int i = 0; i < mActiveViews.size(); i++) {
+                    final TabView tabView = mActiveViews.valueAt(i);
+                    removeViewInLayout(tabView);
+                    recycleTabView(tabView);
+                }
+                mActiveViews.clear();
+            } else {
+                final View tabView = getChildAt(fromPosition);
+                detachViewFromParent(fromPosition);
+                attachViewToParent(tabView, toPosition, tabView.getLayoutParams());
+            }
+            if (mBatchDepth == 0) {
+                requestLayout();
+                invalidate();
+            }
+        }
+
+        void rebindTabView(int position, TabView.Tab oldTab, TabView.Tab newTab) {
+            final TabView tabView = getTabView(position);
+            if (tabView != null)
+                tabView.bind(newTab);
+            if (mVirtualized && !oldTab.hasSameContent(newTab))
+                mContentExtents.setWidth(position, TabExtents.INVALID_WIDTH);
+        }
+
+        /**
+         * Update the view of the tab at <code>position</code> whose content changed, the strip
+         * is only laid out again if the tab's width in it changes.
+         */
+        void onTabContentChanged(int position, TabView.Tab tab, int changes) {
+            // The measuring view isn't rebound to the tab it's bound to already
+            if (mMeasuringView != null && mMeasuringView.getTab() == tab)
+                mMeasuringView.onTabContentChanged(changes);
+
+            boolean contentWidthChanged = false;
+            if (mVirtualized && (changes & ~TabView.Tab.CHANGED_BADGE) != 0
+                    && mContentExtents.getWidth(position) != TabExtents.INVALID_WIDTH) {
+                // Measure the cached width again right away, the active view can't tell
+                final TabView measuringView = getMeasuringView(tab);
+                measuringView.measure(mContentWidthMeasureSpec, mChildHeightMeasureSpec);
+                contentWidthChanged =
+                        measuringView.getMeasuredWidth() != mContentExtents.getWidth(position);
+                mContentExtents.setWidth(position, measuringView.getMeasuredWidth());
+            }
+
+            final TabView tabView = getTabView(position);
+            if (tabView != null && tabView.getTab() == tab)
+                tabView.onTabContentChanged(changes);
+            if (contentWidthChanged)
+                requestLayout();
+        }
+
+        /**
+         * Animate the tab views added, removed or moved until the next layout is done.
+         */
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        void beginTabChangeTransition() {
+            if (mVirtualized || getLayoutTransition() != null)
+                return;
+            final LayoutTransition transition = new LayoutTransition();
+            transition.enableTransitionType(LayoutTransition.CHANGING);
+            transition.addTransitionListener(new LayoutTransition.TransitionListener() {
+                @Override
+                public void startTransition(LayoutTransition transition, ViewGroup container,
+                        View view, int transitionType) {
+                }
+
+                @Override
+                public void endTransition(LayoutTransition transition, ViewGroup container,
+                        View view, int transitionType) {
+                    if (!transition.isRunning())
+                        setLayoutTransition(null);
+                }
+            });
+            setLayoutTransition(transition);
+        }
+
+        public void removeAllTabViews() {
+            for (int i = getChildCount() - 1; i >= 0; i--)
+                recycleTabView((TabView) getChildAt(i));
+            mActiveViews.clear();
+            if (mBatchDepth > 0)
+                removeAllViewsInLayout();
+            else
+                removeAllViews();
+            mExtents.clear();
+            mContentExtents.clear();
+            mSelectedPosition = -1;
+        }
+
+        /**
+         * Returns the view of the tab at <code>position</code>, or null if the strip is
+         * virtualized and the tab is currently outside the viewport.
+         */
         public TabView getTabView(int position) {
+            if (mVirtualized)
+                return mActiveViews.get(position);
             return (TabView) getChildAt(position);
         }
 
+        int getTabCount() {
+            return mVirtualized ? mExtents.getCount() : getChildCount();
+        }
+
+        TabLayoutEngine getLayoutEngine() {
+            return mLayoutEngine;
+        }
+
         public void setSelectedTabView(int position) {
             if (mSelectedPosition == position)
                 return;
-            if (mSelectedPosition != -1)
-                getTabView(mSelectedPosition).setSelected(false);
-            if (position != -1)
-                getTabView(position).setSelected(true);
+            // Changing the selected state invalidates just the two tab views themselves
+            if (mSelectedPosition != -1) {
+                final TabView oldTabView = getTabView(mSelectedPosition);
+                if (oldTabView != null) {
+                    oldTabView.setSelected(false);
+                    mInvalidatedPixels += (long) oldTabView.getWidth() * oldTabView.getHeight();
+                }
+            }
+            if (position != -1) {
+                final TabView newTabView = getTabView(position);
+                if (newTabView != null) {
+                    newTabView.setSelected(true);
+                    mInvalidatedPixels += (long) newTabView.getWidth() * newTabView.getHeight();
+                }
+            }
             mSelectedPosition = position;
         }
 
-        @Override
-        protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
-            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-
-            if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY) {
-                // HorizontalScrollView will first measure use with UNSPECIFIED, and then with
-                // EXACTLY. Ignore the first call since anything we do will be overwritten anyway
+        void setVirtualized(boolean virtualized) {
+            if (mVirtualized == virtualized)
                 return;
+
+            // Release every view we have and rebuild them for the new mode
+            for (int i = getChildCount() - 1; i >= 0; i--)
+                recycleTabView((TabView) getChildAt(i));
+            removeAllViews();
+            mActiveViews.clear();
+            mVirtualized = virtualized;
+
+            final int count = mTabs.size();
+            if (virtualized) {
+                mExtents.clear();
+                mExtents.setCount(count);
+                mContentExtents.clear();
+                mContentExtents.setCount(count);
+            } else {
+                for (int i = 0; i < count; i++)
+                    addView(obtainTabView(mTabs.get(i)), i, createLayoutParamsForTabs());
+                if (mSelectedPosition >= 0 && mSelectedPosition < count)
+                    getTabView(mSelectedPosition).setSelected(true);
             }
+            requestLayout();
+        }
 
-            if (mMode == MODE_FIXED && mTabGravity == GRAVITY_CENTER) {
-                final int count = getChildCount();
+        /**
+         * Called when the parent scrolls, attaching the tabs which came into the viewport and
+         * recycling the ones which left it.
+         */
+        void onViewportChanged() {
+            if (mVirtualized && !isLayoutRequested())
+                populateViewport(false);
+        }
 
-                // First we'll find the widest tab
-                int largestTabWidth = 0;
-                for (int i = 0; i < count; i++) {
-                    View child = getChildAt(i);
-                    if (child.getVisibility() == VISIBLE) {
-                        largestTabWidth = Math.max(largestTabWidth, child.getMeasuredWidth());
-                    }
+        private void populateViewport(boolean layoutAll) {
+            final int count = mExtents.getCount();
+            final int scrollX = BottomTabLayout.this.getScrollX();
+            final int first, last;
+            if (count == 0 || BottomTabLayout.this.getWidth() <= 0) {
+                first = 0;
+                last = -1;
+            } else if (mMode == MODE_FIXED) {
+                // Fixed tabs never scroll, every tab is within the viewport
+                first = 0;
+                last = count - 1;
+            } else {
+                first = Math.max(0, mExtents.indexAt(scrollX) - VIRTUAL_OVERSCAN_TABS);
+                last = Math.min(count - 1, mExtents.indexAt(
+                        scrollX + BottomTabLayout.this.getWidth()) + VIRTUAL_OVERSCAN_TABS);
+            }
+
+            boolean changed = false;
+            for (int i = mActiveViews.size() - 1; i >= 0; i--) {
+                final int position = mActiveViews.keyAt(i);
+                if (position < first || position > last) {
+                    final TabView tabView = mActiveViews.valueAt(i);
+                    mActiveViews.removeAt(i);
+                    removeViewInLayout(tabView);
+                    recycleTabView(tabView);
+                    changed = true;
                 }
+            }
 
-                if (largestTabWidth <= 0) {
-                    // If we don't have a largest child yet, skip until the next measure pass
-                    return;
+            for (int position = first; position <= last; position++) {
+                TabView tabView = mActiveViews.get(position);
+                final boolean attach = tabView == null;
+                if (attach) {
+                    tabView = obtainTabView(mTabs.get(position));
+                    tabView.setSelected(position == mSelectedPosition);
+                    addViewInLayout(tabView, -1, createLayoutParamsForTabs(), true);
+                    mActiveViews.put(position, tabView);
+                    changed = true;
                 }
+                if (attach || tabView.isLayoutRequested())
+                    measureVirtualChild(tabView, position);
+                if (attach || layoutAll)
+                    tabView.layout(mExtents.getLeft(position), getPaddingTop(),
+                            mExtents.getRight(position),
+                            getPaddingTop() + tabView.getMeasuredHeight());
+            }
 
-                final int gutter = dpToPx(FIXED_WRAP_GUTTER_MIN);
-                boolean remeasure = false;
-
-                if (largestTabWidth * count <= getMeasuredWidth() - gutter * 2) {
-                    // If the tabs fit within our width minus gutters, we will set all tabs to have
-                    // the same width
-                    for (int i = 0; i < count; i++) {
-                        final LayoutParams lp =
-                                (LayoutParams) getChildAt(i).getLayoutParams();
-                        if (lp.width != largestTabWidth || lp.weight != 0) {
-                            lp.width = largestTabWidth;
-                            lp.weight = 0;
-                            remeasure = true;
-                        }
+            if (changed)
+                invalidate();
+        }
+
+        private void measureVirtual(int widthMeasureSpec, int heightMeasureSpec) {
+            final int count = mContentExtents.getCount();
+            final int horizontalPadding = getPaddingLeft() + getPaddingRight();
+            final int availableWidth =
+                    MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED
+                            ? TabLayoutEngine.UNBOUNDED
+                            : Math.max(0, MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding);
+            final int childHeightMeasureSpec = getChildMeasureSpec(heightMeasureSpec,
+                    getPaddingTop() + getPaddingBottom(), LayoutParams.MATCH_PARENT);
+            final int contentWidthMeasureSpec = mMode == MODE_FIXED
+                    && availableWidth != TabLayoutEngine.UNBOUNDED
+                    ? MeasureSpec.makeMeasureSpec(availableWidth, MeasureSpec.AT_MOST)
+                    : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+            if (childHeightMeasureSpec != mChildHeightMeasureSpec
+                    || contentWidthMeasureSpec != mContentWidthMeasureSpec
+                    || mTabMaxWidth != mMeasuredTabMaxWidth
+                    || getTabMinWidth() != mMeasuredTabMinWidth) {
+                // The constraints changed, every cached width has to be measured again
+                mChildHeightMeasureSpec = childHeightMeasureSpec;
+                mContentWidthMeasureSpec = contentWidthMeasureSpec;
+                mMeasuredTabMaxWidth = mTabMaxWidth;
+                mMeasuredTabMinWidth = getTabMinWidth();
+                mContentExtents.invalidateWidths();
+            }
+
+            // Measure the content of the tabs lacking a cached width with a single unattached
+            // view, unless their widths don't depend on it
+            if (TabLayoutEngine.needsContentWidths(mMode, mTabGravity, availableWidth)) {
+                if (mContentWidths.length < count)
+                    mContentWidths = new int[Math.max(count, mContentWidths.length * 2)];
+                for (int i = 0; i < count; i++) {
+                    if (mContentExtents.getWidth(i) == TabExtents.INVALID_WIDTH) {
+                        final TabView measuringView = getMeasuringView(mTabs.get(i));
+                        measuringView.measure(contentWidthMeasureSpec, childHeightMeasureSpec);
+                        mContentExtents.setWidth(i, measuringView.getMeasuredWidth());
                     }
-                } else {
-                    // If the tabs will wrap to be larger than the width minus gutters, we need
-                    // to switch to GRAVITY_FILL
-                    setTabGravity(GRAVITY_FILL);
-                    updateTabViews(false);
-                    remeasure = true;
+                    mContentWidths[i] = mContentExtents.getWidth(i);
                 }
+            }
+            mLayoutEngine.measure(mContentWidths, count, mMode, mTabGravity, availableWidth,
+                    mFixedWrapGutterMinPx);
 
-                if (remeasure) {
-                    // Now re-measure after our changes
-                    super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-                }
+            for (int i = 0; i < mActiveViews.size(); i++)
+                measureVirtualChild(mActiveViews.valueAt(i), mActiveViews.keyAt(i));
+
+            setMeasuredDimension(
+                    resolveSize(mLayoutEngine.getContentWidth() + horizontalPadding,
+                            widthMeasureSpec),
+                    getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec));
+        }
+
+        private void measureVirtualChild(TabView tabView, int position) {
+            tabView.measure(MeasureSpec.makeMeasureSpec(mExtents.getWidth(position),
+                    MeasureSpec.EXACTLY), mChildHeightMeasureSpec);
+        }
+
+        private TabView getMeasuringView(TabView.Tab tab) {
+            if (mMeasuringView == null || mMeasuringView.isFlat() != mFlatTabViewsEnabled)
+                mMeasuringView = new TabView(getContext(), tab, BottomTabLayout.this, true);
+            else
+                mMeasuringView.bind(tab);
+            mMeasuringView.setMinimumWidth(getTabMinWidth());
+            return mMeasuringView;
+        }
+
+        private void recycleTabView(TabView tabView) {
+            // A view animating out keeps its parent until the transition ends, don't reuse it
+            if (getLayoutTransition() == null)
+                mTabViewPool.release(tabView);
+        }
+
+        /**
+         * Shift the positions of the attached views at or after <code>start</code>.
+         */
+        private void offsetActiveViews(int start, int offset) {
+            if (mActiveViews.size() == 0)
+                return;
+            final SparseArray<TabView> offsetViews = new SparseArray<>(mActiveViews.size());
+            for (int i = 0; i < mActiveViews.size(); i++) {
+                final int position = mActiveViews.keyAt(i);
+                offsetViews.put(position >= start ? position + offset : position,
+                        mActiveViews.valueAt(i));
             }
+            mActiveViews.clear();
+            for (int i = 0; i < offsetViews.size(); i++)
+                mActiveViews.put(offsetViews.keyAt(i), offsetViews.valueAt(i));
+        }
+
+        @Override
+        protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
+            if (mMetrics == null) {
+                measureTabs(widthMeasureSpec, heightMeasureSpec);
+                return;
+            }
+            final long start = System.nanoTime();
+            measureTabs(widthMeasureSpec, heightMeasureSpec);
+            mMetrics.recordSince(TabMetrics.OP_MEASURE, start);
+        }
+
+        private void measureTabs(int widthMeasureSpec, int heightMeasureSpec) {
+            if (mVirtualized) {
+                measureVirtual(widthMeasureSpec, heightMeasureSpec);
+                return;
+            }
+
+            final int count = getChildCount();
+            final int horizontalPadding = getPaddingLeft() + getPaddingRight();
+            final int availableWidth =
+                    MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED
+                            ? TabLayoutEngine.UNBOUNDED
+                            : Math.max(0, MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding);
+            final int childHeightMeasureSpec = getChildMeasureSpec(heightMeasureSpec,
+                    getPaddingTop() + getPaddingBottom(), LayoutParams.MATCH_PARENT);
+
+            // Read the tabs' content widths if their widths depend on them, each tab caches
+            // its own so unchanged tabs aren't measured for it again
+            final boolean measureContent =
+                    TabLayoutEngine.needsContentWidths(mMode, mTabGravity, availableWidth);
+            if (measureContent) {
+                if (mContentWidths.length < count)
+                    mContentWidths = new int[Math.max(count, mContentWidths.length * 2)];
+                final int contentWidthMeasureSpec = mMode == MODE_FIXED
+                        && availableWidth != TabLayoutEngine.UNBOUNDED
+                        ? MeasureSpec.makeMeasureSpec(availableWidth, MeasureSpec.AT_MOST)
+                        : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+                for (int i = 0; i < count; i++)
+                    mContentWidths[i] = ((TabView) getChildAt(i)).measureContentWidth(
+                            contentWidthMeasureSpec, childHeightMeasureSpec);
+            }
+
+            // Centered tabs which don't fit within the gutters fill the strip for this pass
+            // only, neither the gravity nor the tabs' layout params are touched
+            mLayoutEngine.measure(mContentWidths, count, mMode, mTabGravity, availableWidth,
+                    mFixedWrapGutterMinPx);
+
+            // Then give every tab its final width, tabs already measured at it are skipped
+            int maxChildHeight = 0;
+            for (int i = 0; i < count; i++) {
+                final View child = getChildAt(i);
+                final int width = mExtents.getWidth(i);
+                if (!measureContent || child.getMeasuredWidth() != width)
+                    child.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                            childHeightMeasureSpec);
+                maxChildHeight = Math.max(maxChildHeight, child.getMeasuredHeight());
+            }
+
+            setMeasuredDimension(
+                    resolveSize(mLayoutEngine.getContentWidth() + horizontalPadding,
+                            widthMeasureSpec),
+                    resolveSize(Math.max(maxChildHeight + getPaddingTop() + getPaddingBottom(),
+                            getSuggestedMinimumHeight()), heightMeasureSpec));
         }
 
         @Override
         protected void onLayout(boolean changed, int l, int t, int r, int b) {
-            super.onLayout(changed, l, t, r, b);
+            if (mMetrics == null) {
+                layoutTabs(changed, l, t, r, b);
+                return;
+            }
+            final long start = System.nanoTime();
+            layoutTabs(changed, l, t, r, b);
+            mMetrics.recordSince(TabMetrics.OP_LAYOUT, start);
+        }
+
+        private void layoutTabs(boolean changed, int l, int t, int r, int b) {
+            if (mVirtualized) {
+                // Scrolled tabs are only virtualized left-to-right, see populateViewport()
+                mLayoutEngine.layout(getPaddingLeft(), r - l - getPaddingRight(),
+                        mMode == MODE_FIXED && ViewCompat.getLayoutDirection(this)
+                                == ViewCompat.LAYOUT_DIRECTION_RTL);
+                populateViewport(true);
+            } else {
+                // Place the tabs at the extents settled while measuring, which scroll and
+                // indicator math read instead of touching the children
+                final int count = getChildCount();
+                if (mExtents.getCount() != count)
+                    mExtents.setCount(count);
+                mLayoutEngine.layout(getPaddingLeft(), r - l - getPaddingRight(),
+                        ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL);
+                final int top = getPaddingTop();
+                for (int i = 0; i < count; i++) {
+                    final View child = getChildAt(i);
+                    child.layout(mExtents.getLeft(i), top, mExtents.getRight(i),
+                            top + child.getMeasuredHeight());
+                }
+            }
 
+            if (mIndicatorView != null)
+                updateIndicatorView();
             if (!mShowTabIndicator)
                 return;
 
-            if (mCurrentAnimator != null && mCurrentAnimator.isRunning()) {
+            if (mIndicatorAnimator != null && mIndicatorAnimator.isRunning()) {
                 // If we're currently running an animation, lets cancel it and start a
                 // new animation with the remaining duration
-                mCurrentAnimator.cancel();
-                final long duration = mCurrentAnimator.getDuration();
+                final float fraction = mIndicatorAnimator.getAnimatedFraction();
+                mIndicatorAnimator.cancel();
+                final long duration = mIndicatorAnimator.getDuration();
                 animateIndicatorToPosition(mSelectedPosition,
-                        Math.round((1f - mCurrentAnimator.getAnimatedFraction()) * duration));
+                        Math.round((1f - fraction) * duration));
             } else {
                 // If we've been layed out, update the indicator position
                 updateIndicatorPosition();
@@ -875,54 +1949,45 @@ public class BottomTabLayout extends HorizontalScrollView {
 
         @Override
         public void draw(Canvas canvas) {
+            final long start = mMetrics != null ? System.nanoTime() : 0;
             super.draw(canvas);
 
-            // Thick colored underline below the current selection
-            if (!mShowTabIndicator)
-                return;
-            if (mIndicatorLeft >= 0 && mIndicatorRight > mIndicatorLeft) {
-                int top, bottom;
-                if (mTabIndicatorPosition == 0) {
-                    top = 0;
-                    bottom = mSelectedIndicatorHeight;
-                }
-                else {
-                    top = getHeight() - mSelectedIndicatorHeight;
-                    bottom = getHeight();
-                }
+            // Thick colored underline below the current selection, unless it has its own view
+            if (mShowTabIndicator && mIndicatorView == null
+                    && mIndicatorLeft >= 0 && mIndicatorRight > mIndicatorLeft)
+                canvas.drawRect(mIndicatorLeft, getIndicatorTop(), mIndicatorRight,
+                        getIndicatorBottom(), mSelectedIndicatorPaint);
+            if (mMetrics != null)
+                mMetrics.recordSince(TabMetrics.OP_DRAW, start);
+        }
 
-                canvas.drawRect(mIndicatorLeft, top, mIndicatorRight, bottom, mSelectedIndicatorPaint);
-            }
+        private int getIndicatorTop() {
+            return mTabIndicatorPosition == 0 ? 0 : getHeight() - mSelectedIndicatorHeight;
         }
 
-        public void updateTabViews(final boolean requestLayout) {
-            for (int i = 0; i < getChildCount(); i++) {
-                View child = getChildAt(i);
-                child.setMinimumWidth(getTabMinWidth());
-                updateTabViewLayoutParams((LayoutParams) child.getLayoutParams());
-                if (requestLayout)
-                    child.requestLayout();
-            }
+        private int getIndicatorBottom() {
+            return mTabIndicatorPosition == 0 ? mSelectedIndicatorHeight : getHeight();
         }
 
-        public void updateTabViewLayoutParams(LayoutParams lp) {
-            if (mMode == MODE_FIXED && mTabGravity == GRAVITY_FILL) {
-                lp.width = 0;
-                lp.weight = 1;
-            } else {
-                lp.width = LayoutParams.WRAP_CONTENT;
-                lp.weight = 0;
-            }
+        public void updateTabViews(final boolean requestLayout) {
+            // Tabs only request a layout if their minimum width actually changes, the others
+            // keep their measured content widths
+            final int minWidth = getTabMinWidth();
+            for (int i = 0; i < getChildCount(); i++)
+                getChildAt(i).setMinimumWidth(minWidth);
+            if (requestLayout)
+                requestLayout();
         }
 
         private LayoutParams createLayoutParamsForTabs() {
-            final LayoutParams lp = new LayoutParams(
+            // Only kept for the LinearLayout contract, the layout engine sizes the tabs
+            return new LayoutParams(
                     FrameLayout.LayoutParams.WRAP_CONTENT, FrameLayout.LayoutParams.MATCH_PARENT);
-            updateTabViewLayoutParams(lp);
-            return lp;
         }
 
         boolean childrenNeedLayout() {
+            if (mVirtualized)
+                return mExtents.hasInvalidWidths();
             for (int i = 0; i < getChildCount(); i++) {
                 final View child = getChildAt(i);
                 if (child.getWidth() <= 0) {
@@ -933,37 +1998,47 @@ public class BottomTabLayout extends HorizontalScrollView {
         }
 
         private void updateIndicatorPosition() {
-            final View selectedTab = getChildAt(mSelectedPosition);
-            int left, right;
-
-            if (selectedTab != null && selectedTab.getWidth() > 0) {
-                left = selectedTab.getLeft();
-                right = selectedTab.getRight();
-
-                if (mSelectionOffset > 0f && mSelectedPosition < getChildCount() - 1) {
-                    // Draw the selection partway between the tabs
-                    View nextTitle = getChildAt(mSelectedPosition + 1);
-                    left = (int) (mSelectionOffset * nextTitle.getLeft() +
-                            (1.0f - mSelectionOffset) * left);
-                    right = (int) (mSelectionOffset * nextTitle.getRight() +
-                            (1.0f - mSelectionOffset) * right);
-                }
-            } else {
-                left = right = -1;
-            }
-
-            setIndicatorPosition(left, right);
+            // Draws the selection partway between the tabs while the offset is set
+            setIndicatorPosition(mLayoutEngine.getIndicatorLeft(mSelectedPosition, mSelectionOffset),
+                    mLayoutEngine.getIndicatorRight(mSelectedPosition, mSelectionOffset));
         }
 
         private void setIndicatorPosition(int left, int right) {
             if (left != mIndicatorLeft || right != mIndicatorRight) {
-                // If the indicator's left/right has changed, invalidate
+                // Only the union of the old and new indicator needs to be redrawn
+                int dirtyLeft = Integer.MAX_VALUE;
+                int dirtyRight = 0;
+                if (mIndicatorLeft >= 0 && mIndicatorRight > mIndicatorLeft) {
+                    dirtyLeft = mIndicatorLeft;
+                    dirtyRight = mIndicatorRight;
+                }
+                if (left >= 0 && right > left) {
+                    dirtyLeft = Math.min(dirtyLeft, left);
+                    dirtyRight = Math.max(dirtyRight, right);
+                }
                 mIndicatorLeft = left;
                 mIndicatorRight = right;
-                ViewCompat.postInvalidateOnAnimation(this);
+                if (mIndicatorView != null) {
+                    // Only the indicator's render properties change, the tabs aren't redrawn
+                    if (mShowTabIndicator)
+                        mIndicatorView.setHorizontalBounds(left, right);
+                } else if (mShowTabIndicator && dirtyRight > dirtyLeft) {
+                    final int top = getIndicatorTop();
+                    final int bottom = getIndicatorBottom();
+                    ViewCompat.postInvalidateOnAnimation(this, dirtyLeft, top, dirtyRight, bottom);
+                    mInvalidatedPixels += (long) (dirtyRight - dirtyLeft) * (bottom - top);
+                }
             }
         }
 
+        long getInvalidatedPixels() {
+            return mInvalidatedPixels;
+        }
+
+        void resetInvalidatedPixels() {
+            mInvalidatedPixels = 0;
+        }
+
         void setIndicatorPositionFromTabPosition(int position, float positionOffset) {
             mSelectedPosition = position;
             mSelectionOffset = positionOffset;
@@ -974,9 +2049,8 @@ public class BottomTabLayout extends HorizontalScrollView {
             final boolean isRtl = ViewCompat.getLayoutDirection(this)
                     == ViewCompat.LAYOUT_DIRECTION_RTL;
 
-            final View targetView = getChildAt(position);
-            final int targetLeft = targetView.getLeft();
-            final int targetRight = targetView.getRight();
+            final int targetLeft = mExtents.getLeft(position);
+            final int targetRight = mExtents.getRight(position);
             final int startLeft;
             final int startRight;
 
@@ -986,7 +2060,7 @@ public class BottomTabLayout extends HorizontalScrollView {
                 startRight = mIndicatorRight;
             } else {
                 // Else, we'll just grow from the nearest edge
-                final int offset = dpToPx(MOTION_NON_ADJACENT_OFFSET);
+                final int offset = mMotionNonAdjacentOffsetPx;
                 if (position < mSelectedPosition) {
                     // We're going end-to-start
                     if (isRtl)
@@ -1003,33 +2077,22 @@ public class BottomTabLayout extends HorizontalScrollView {
             }
 
             if (startLeft != targetLeft || startRight != targetRight) {
-                final ValueAnimator animator = mIndicatorAnimator = new ValueAnimator();
-                animator.setInterpolator(new FastOutSlowInInterpolator());
-                animator.setDuration(duration);
-                animator.setFloatValues(0, 1);
-                animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                    @Override
-                    public void onAnimationUpdate(ValueAnimator animation) {
-                        final float fraction = animator.getAnimatedFraction();
-                        setIndicatorPosition(lerp(startLeft, targetLeft, fraction),
-                                lerp(startRight, targetRight, fraction));
-                    }
-                });
-                animator.addListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animator) {
-                        mSelectedPosition = position;
-                        mSelectionOffset = 0f;
-                    }
-
-                    @Override
-                    public void onAnimationCancel(Animator animator) {
-                        mSelectedPosition = position;
-                        mSelectionOffset = 0f;
-                    }
-                });
-                animator.start();
-                mCurrentAnimator = animator;
+                if (mIndicatorAnimator == null) {
+                    mIndicatorAnimator = new ValueAnimator();
+                    mIndicatorAnimator.setInterpolator(FAST_OUT_SLOW_IN_INTERPOLATOR);
+                    mIndicatorAnimator.setFloatValues(0, 1);
+                    mIndicatorAnimator.addUpdateListener(mIndicatorAnimatorListener);
+                    mIndicatorAnimator.addListener(mIndicatorAnimatorListener);
+                } else if (mIndicatorAnimator.isRunning()) {
+                    mIndicatorAnimator.cancel();
+                }
+                mIndicatorStartLeft = startLeft;
+                mIndicatorStartRight = startRight;
+                mIndicatorTargetLeft = targetLeft;
+                mIndicatorTargetRight = targetRight;
+                mIndicatorTargetPosition = position;
+                mIndicatorAnimator.setDuration(duration);
+                mIndicatorAnimator.start();
             }
         }
 
@@ -1037,8 +2100,80 @@ public class BottomTabLayout extends HorizontalScrollView {
             return mSelectedPosition + mSelectionOffset;
         }
 
-        private int lerp(int startValue, int endValue, float fraction) {
-            return startValue + Math.round(fraction * (endValue - startValue));
+        private class IndicatorAnimatorListener extends AnimatorListenerAdapter
+                implements ValueAnimator.AnimatorUpdateListener {
+            // Frame bookkeeping, only used while metrics are collected
+            private long mLastFrameNanos;
+            private int mDroppedFrames;
+            private boolean mCanceled;
+
+            @Override
+            public void onAnimationStart(Animator animator) {
+                mLastFrameNanos = 0;
+                mDroppedFrames = 0;
+                mCanceled = false;
+            }
+
+            @Override
+            public void onAnimationUpdate(ValueAnimator animator) {
+                final float fraction = animator.getAnimatedFraction();
+                setIndicatorPosition(lerp(mIndicatorStartLeft, mIndicatorTargetLeft, fraction),
+                        lerp(mIndicatorStartRight, mIndicatorTargetRight, fraction));
+
+                if (mMetrics != null) {
+                    final long now = System.nanoTime();
+                    if (mLastFrameNanos != 0) {
+                        final int frames = Math.round(
+                                (now - mLastFrameNanos) / (float) FRAME_INTERVAL_NANOS);
+                        if (frames > 1)
+                            mDroppedFrames += frames - 1;
+                    }
+                    mLastFrameNanos = now;
+                }
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animator) {
+                mSelectedPosition = mIndicatorTargetPosition;
+                mSelectionOffset = 0f;
+
+                // A canceled animation is restarted or superseded, only report finished ones
+                if (mMetrics != null && !mCanceled) {
+                    mMetrics.record(TabMetrics.OP_DROPPED_FRAMES, mDroppedFrames);
+                    dispatchMetrics(false);
+                }
+            }
+
+            @Override
+            public void onAnimationCancel(Animator animator) {
+                mSelectedPosition = mIndicatorTargetPosition;
+                mSelectionOffset = 0f;
+                mCanceled = true;
+            }
+        }
+    }
+
+    private static int lerp(int startValue, int endValue, float fraction) {
+        return startValue + Math.round(fraction * (endValue - startValue));
+    }
+
+    /**
+     * Forwards content changes of our tabs to us. Tabs outlive layouts, e.g. when cached across
+     * Activities, and reach this observer through their store, so it mustn't keep us alive.
+     */
+    private static final class TabContentObserver
+            implements TabStore.ContentObserver<TabView.Tab> {
+        private final WeakReference<BottomTabLayout> mTabLayoutRef;
+
+        TabContentObserver(BottomTabLayout tabLayout) {
+            mTabLayoutRef = new WeakReference<>(tabLayout);
+        }
+
+        @Override
+        public void onTabContentChanged(TabView.Tab tab, int changes) {
+            final BottomTabLayout tabLayout = mTabLayoutRef.get();
+            if (tabLayout != null)
+                tabLayout.onTabContentChanged(tab, changes);
         }
     }
 
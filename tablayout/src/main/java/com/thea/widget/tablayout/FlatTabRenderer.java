@@ -0,0 +1,321 @@
+package com.thea.widget.tablayout;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.View.MeasureSpec;
+
+import java.util.Locale;
+
+/**
+ * Measures and draws the icon and label of a flat {@link TabView} directly on the tab's canvas,
+ * so the tab needs no child views. Mirrors the layout_tab_icon and layout_tab_text children of
+ * a regular tab: a centered icon above a centered, all caps label of at most two lines.
+ */
+final class FlatTabRenderer {
+    private final TabView mView;
+    private final int mIconSize;
+    private final TextPaint mTextPaint;
+    private final Locale mLocale;
+
+    private Drawable mIcon;
+    private float mIconScale = 1f;
+    private CharSequence mText;
+    private ColorStateList mTextColors;
+
+    // The laid out label and what it was laid out for
+    private Layout mLayout;
+    private CharSequence mLayoutText;
+    private int mLayoutMaxWidth;
+    private float mLayoutTextSize;
+    private float mLayoutMultiLineTextSize;
+    private int mLayoutMaxLines;
+    // Single line width of the label at mDesiredWidthTextSize
+    private CharSequence mDesiredWidthText;
+    private float mDesiredWidthTextSize;
+    private float mDesiredWidth;
+
+    // Offsets of the icon and label inside the tab, set by layout()
+    private int mIconLeft;
+    private int mIconTop;
+    private int mTextLeft;
+    private int mTextTop;
+
+    /**
+     * @param labelPaint Paint of a regular tab label, copied so the label looks the same
+     */
+    FlatTabRenderer(TabView view, int iconSize, TextPaint labelPaint, Locale locale) {
+        mView = view;
+        mIconSize = iconSize;
+        mTextPaint = new TextPaint(labelPaint);
+        mLocale = locale;
+    }
+
+    void setIcon(Drawable icon) {
+        if (mIcon == icon)
+            return;
+        if (mIcon != null)
+            mIcon.setCallback(null);
+        mIcon = icon;
+        if (icon != null) {
+            icon.setCallback(mView);
+            if (icon.isStateful())
+                icon.setState(mView.getDrawableState());
+        }
+        mView.requestLayout();
+        mView.invalidate();
+    }
+
+    Drawable getIcon() {
+        return mIcon;
+    }
+
+    int getIconSize() {
+        return mIconSize;
+    }
+
+    /**
+     * Returns the left of the icon, or of the label if there's no icon, as of the last layout.
+     */
+    int getContentLeft() {
+        return mIcon == null && mLayout != null ? mTextLeft : mIconLeft;
+    }
+
+    /**
+     * Returns the right of the icon, or of the label if there's no icon, as of the last layout.
+     */
+    int getContentRight() {
+        if (mIcon == null && mLayout != null)
+            return mTextLeft + mLayout.getWidth();
+        return mIconLeft + mIconSize;
+    }
+
+    /**
+     * Returns the top of the icon, or of the label if there's no icon, as of the last layout.
+     */
+    int getContentTop() {
+        return mIcon == null && mLayout != null ? mTextTop : mIconTop;
+    }
+
+    void setIconScale(float scale) {
+        if (mIconScale != scale) {
+            mIconScale = scale;
+            mView.invalidate();
+        }
+    }
+
+    /**
+     * @param text The label, or null to show none
+     */
+    void setText(CharSequence text) {
+        // Labels are displayed in all caps, see layout_tab_text
+        final CharSequence displayText = TextUtils.isEmpty(text)
+                ? null : text.toString().toUpperCase(mLocale);
+        if (!TextUtils.equals(mText, displayText)) {
+            mText = displayText;
+            mLayout = null;
+            mView.requestLayout();
+            mView.invalidate();
+        }
+    }
+
+    CharSequence getText() {
+        return mText;
+    }
+
+    void setTextColors(ColorStateList colors) {
+        mTextColors = colors;
+        updateTextColor();
+    }
+
+    /**
+     * Apply the view's drawable state to the icon and label, e.g. once it is selected.
+     */
+    void onStateChanged() {
+        if (mIcon != null && mIcon.isStateful())
+            mIcon.setState(mView.getDrawableState());
+        updateTextColor();
+    }
+
+    private void updateTextColor() {
+        final int color = mTextColors != null
+                ? mTextColors.getColorForState(mView.getDrawableState(),
+                        mTextColors.getDefaultColor()) : 0xff000000;
+        if (mTextPaint.getColor() != color) {
+            mTextPaint.setColor(color);
+            mView.invalidate();
+        }
+    }
+
+    /**
+     * Measure the tab, picking the label's text size like a regular tab: labels under an icon
+     * keep one line, other labels which wrap get the smaller multi line text size.
+     *
+     * @return The measured size packed as width and height, see {@link #getWidth(long)}
+     */
+    long measure(int widthMeasureSpec, int heightMeasureSpec, float textSize,
+            float multiLineTextSize, int defaultMaxLines, int minWidth, int minHeight) {
+        final int horizontalPadding = mView.getPaddingLeft() + mView.getPaddingRight();
+        final int verticalPadding = mView.getPaddingTop() + mView.getPaddingBottom();
+        final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        final int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        final boolean hasIcon = mIcon != null;
+
+        int contentWidth = hasIcon ? mIconSize : 0;
+        int contentHeight = hasIcon ? mIconSize : 0;
+        if (mText != null) {
+            final int maxLines = hasIcon ? 1 : defaultMaxLines;
+            final int maxTextWidth = widthMode == MeasureSpec.UNSPECIFIED
+                    ? Integer.MAX_VALUE : Math.max(0, widthSize - horizontalPadding);
+            final Layout layout = getLayout(textSize, hasIcon ? textSize : multiLineTextSize,
+                    maxTextWidth, maxLines);
+            contentWidth = Math.max(contentWidth, layout.getWidth());
+            contentHeight += layout.getHeight();
+        }
+
+        final int width = View.resolveSize(Math.max(contentWidth + horizontalPadding, minWidth),
+                widthMeasureSpec);
+        final int height = View.resolveSize(Math.max(contentHeight + verticalPadding, minHeight),
+                heightMeasureSpec);
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+
+    static int getWidth(long size) {
+        return (int) (size >>> 32);
+    }
+
+    static int getHeight(long size) {
+        return (int) size;
+    }
+
+    /**
+     * Center the icon and label inside the tab.
+     */
+    void layout(int width, int height) {
+        final int left = mView.getPaddingLeft();
+        final int top = mView.getPaddingTop();
+        final int innerWidth = width - left - mView.getPaddingRight();
+        final int innerHeight = height - top - mView.getPaddingBottom();
+        final int iconHeight = mIcon != null ? mIconSize : 0;
+        final int textHeight = mText != null && mLayout != null ? mLayout.getHeight() : 0;
+
+        int y = top + (innerHeight - iconHeight - textHeight) / 2;
+        if (mIcon != null) {
+            mIconLeft = left + (innerWidth - mIconSize) / 2;
+            mIconTop = y;
+            setIconBounds();
+            y += mIconSize;
+        }
+        if (mLayout != null) {
+            mTextLeft = left + (innerWidth - mLayout.getWidth()) / 2;
+            mTextTop = y;
+        }
+    }
+
+    private void setIconBounds() {
+        // Like ImageView's centerInside: shrink icons larger than the icon size, keep others
+        int iconWidth = mIcon.getIntrinsicWidth();
+        int iconHeight = mIcon.getIntrinsicHeight();
+        if (iconWidth <= 0 || iconHeight <= 0) {
+            iconWidth = iconHeight = mIconSize;
+        } else if (iconWidth > mIconSize || iconHeight > mIconSize) {
+            final float scale = Math.min((float) mIconSize / iconWidth,
+                    (float) mIconSize / iconHeight);
+            iconWidth = Math.round(iconWidth * scale);
+            iconHeight = Math.round(iconHeight * scale);
+        }
+        final int left = mIconLeft + (mIconSize - iconWidth) / 2;
+        final int top = mIconTop + (mIconSize - iconHeight) / 2;
+        mIcon.setBounds(left, top, left + iconWidth, top + iconHeight);
+    }
+
+    void draw(Canvas canvas) {
+        if (mIcon != null) {
+            if (mIconScale != 1f) {
+                final int saveCount = canvas.save();
+                canvas.scale(mIconScale, mIconScale, mIconLeft + mIconSize / 2f,
+                        mIconTop + mIconSize / 2f);
+                mIcon.draw(canvas);
+                canvas.restoreToCount(saveCount);
+            } else {
+                mIcon.draw(canvas);
+            }
+        }
+        if (mText != null && mLayout != null) {
+            final int saveCount = canvas.save();
+            canvas.translate(mTextLeft, mTextTop);
+            mLayout.draw(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    /**
+     * Returns the label laid out within <code>maxWidth</code>, ellipsized after
+     * <code>maxLines</code>, at <code>textSize</code> or at <code>multiLineTextSize</code> if
+     * it wraps at the former. The last layout is reused if nothing changed, so measuring again
+     * under the same constraints lays nothing out, whichever size was picked.
+     */
+    private Layout getLayout(float textSize, float multiLineTextSize, int maxWidth,
+            int maxLines) {
+        // The label's layout follows from these, checking them needs no measuring
+        if (mLayout != null && mLayoutText == mText && mLayoutMaxWidth == maxWidth
+                && mLayoutTextSize == textSize && mLayoutMultiLineTextSize == multiLineTextSize
+                && mLayoutMaxLines == maxLines)
+            return mLayout;
+
+        Layout layout = newLayout(textSize, maxWidth, maxLines);
+        if (layout.getLineCount() > 1 && multiLineTextSize != textSize)
+            layout = newLayout(multiLineTextSize, maxWidth, maxLines);
+
+        mLayout = layout;
+        mLayoutText = mText;
+        mLayoutMaxWidth = maxWidth;
+        mLayoutTextSize = textSize;
+        mLayoutMultiLineTextSize = multiLineTextSize;
+        mLayoutMaxLines = maxLines;
+        return layout;
+    }
+
+    /**
+     * Lay the label out at <code>textSize</code> within <code>maxWidth</code>, ellipsized
+     * after <code>maxLines</code>.
+     */
+    private Layout newLayout(float textSize, int maxWidth, int maxLines) {
+        mTextPaint.setTextSize(textSize);
+        final int width = (int) Math.min(maxWidth, Math.ceil(getDesiredWidth(textSize)));
+        Layout layout = newLayout(mText, width);
+        if (layout.getLineCount() > maxLines) {
+            // StaticLayout can't limit its lines before API 23, ellipsize the last line by hand
+            final int lastLineStart = layout.getLineStart(maxLines - 1);
+            final CharSequence ellipsized = TextUtils.concat(
+                    mText.subSequence(0, lastLineStart),
+                    TextUtils.ellipsize(mText.subSequence(lastLineStart, mText.length()),
+                            mTextPaint, width, TextUtils.TruncateAt.END));
+            layout = newLayout(ellipsized, width);
+        }
+        return layout;
+    }
+
+    /**
+     * Returns the single line width of the label at <code>textSize</code>, which the paint must
+     * be set to. The label is only measured again once it or the size changed.
+     */
+    private float getDesiredWidth(float textSize) {
+        if (mDesiredWidthText != mText || mDesiredWidthTextSize != textSize) {
+            mDesiredWidth = Layout.getDesiredWidth(mText, mTextPaint);
+            mDesiredWidthText = mText;
+            mDesiredWidthTextSize = textSize;
+        }
+        return mDesiredWidth;
+    }
+
+    private Layout newLayout(CharSequence text, int width) {
+        return new StaticLayout(text, mTextPaint, width, Layout.Alignment.ALIGN_CENTER,
+                1f, 0f, false);
+    }
+}
@@ -0,0 +1,102 @@
+package com.thea.widget.tablayout;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+/**
+ * Draws the badges of the tabs of a {@link BottomTabLayout} over the {@link TabView}s, see
+ * {@link TabView.Tab#setBadgeNumber(int)}. Badges never take part in measuring or layout.
+ *
+ * <p>Badges are sized by digit count rather than by their text: every digit is given the width
+ * of the widest one, and these widths are computed once, so a counter ticking from 12 to 13
+ * neither measures text nor makes its badge jitter. Numbers are drawn from a char buffer,
+ * updating a badge allocates nothing.</p>
+ */
+final class TabBadgeRenderer {
+    private static final char[] CAPPED_TEXT = (TabView.Tab.BADGE_MAX_NUMBER + "+").toCharArray();
+    private static final int MAX_DIGITS = String.valueOf(TabView.Tab.BADGE_MAX_NUMBER).length();
+
+    private final Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF mBounds = new RectF();
+    private final char[] mDigits = new char[MAX_DIGITS];
+
+    private final int mHeight;
+    private final int mDotSize;
+    private final float mBaselineOffset;
+    // Badge widths by digit count, the last one is that of CAPPED_TEXT
+    private final int[] mWidths = new int[MAX_DIGITS + 2];
+
+    TabBadgeRenderer(Resources res, int color, int textColor) {
+        mHeight = res.getDimensionPixelSize(R.dimen.tab_badge_height);
+        mDotSize = res.getDimensionPixelSize(R.dimen.tab_badge_dot_size);
+        mBackgroundPaint.setColor(color);
+        mTextPaint.setColor(textColor);
+        mTextPaint.setTextSize(res.getDimensionPixelSize(R.dimen.tab_badge_text_size));
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+
+        // Center the digits vertically, whatever they are
+        final Paint.FontMetrics metrics = mTextPaint.getFontMetrics();
+        mBaselineOffset = -(metrics.ascent + metrics.descent) / 2f;
+
+        float digitWidth = 0f;
+        for (char digit = '0'; digit <= '9'; digit++)
+            digitWidth = Math.max(digitWidth, mTextPaint.measureText(String.valueOf(digit)));
+        final int padding = res.getDimensionPixelSize(R.dimen.tab_badge_padding);
+        for (int digits = 1; digits <= MAX_DIGITS; digits++)
+            mWidths[digits] = Math.max(mHeight,
+                    (int) Math.ceil(digitWidth * digits) + 2 * padding);
+        mWidths[MAX_DIGITS + 1] = Math.max(mHeight, (int) Math.ceil(
+                mTextPaint.measureText(CAPPED_TEXT, 0, CAPPED_TEXT.length)) + 2 * padding);
+    }
+
+    /**
+     * Draw a badge centered on the top end corner of the tab's content, kept within the tab.
+     * The badge overlaps the content by half its height and grows away from it.
+     *
+     * @param badge     A number, or {@link TabView.Tab#BADGE_DOT}
+     * @param anchorX   Horizontal position of the end of the tab's content, its left in RTL
+     * @param anchorY   Vertical position of the top of the tab's content
+     * @param viewWidth Width of the tab
+     * @param rtl       Whether the tab is laid out right-to-left
+     */
+    void draw(Canvas canvas, int badge, int anchorX, int anchorY, int viewWidth, boolean rtl) {
+        if (badge == TabView.Tab.BADGE_DOT) {
+            setBounds(anchorX, anchorY, mDotSize, mDotSize, viewWidth, rtl);
+            canvas.drawOval(mBounds, mBackgroundPaint);
+            return;
+        }
+
+        final boolean capped = badge > TabView.Tab.BADGE_MAX_NUMBER;
+        int digits = 0;
+        if (!capped) {
+            // Fill the buffer from its end, the digits are drawn from the first one set
+            for (int number = badge; number > 0; number /= 10)
+                mDigits[MAX_DIGITS - ++digits] = (char) ('0' + number % 10);
+        }
+        setBounds(anchorX, anchorY, mWidths[capped ? MAX_DIGITS + 1 : digits], mHeight,
+                viewWidth, rtl);
+        final float radius = mHeight / 2f;
+        canvas.drawRoundRect(mBounds, radius, radius, mBackgroundPaint);
+
+        final float x = mBounds.centerX();
+        final float y = mBounds.centerY() + mBaselineOffset;
+        if (capped)
+            canvas.drawText(CAPPED_TEXT, 0, CAPPED_TEXT.length, x, y, mTextPaint);
+        else
+            canvas.drawText(mDigits, MAX_DIGITS - digits, digits, x, y, mTextPaint);
+    }
+
+    private void setBounds(int anchorX, int anchorY, int width, int height, int viewWidth,
+            boolean rtl) {
+        final int start = rtl ? anchorX + height / 2 - width : anchorX - height / 2;
+        // Keep the badge within the tab, on its start side if it's wider than the tab
+        final int left = rtl
+                ? Math.min(viewWidth - width, Math.max(0, start))
+                : Math.max(0, Math.min(start, viewWidth - width));
+        final int top = Math.max(0, anchorY - height / 2);
+        mBounds.set(left, top, left + width, top + height);
+    }
+}
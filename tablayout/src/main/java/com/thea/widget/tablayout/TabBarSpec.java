@@ -0,0 +1,252 @@
+package com.thea.widget.tablayout;
+
+import android.content.res.ColorStateList;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable description of a tab bar: its tabs and the settings to apply on top of the
+ * layout's style. A spec holds no {@link android.content.Context} or {@link
+ * android.graphics.drawable.Drawable}, so it can be built on any thread, e.g. at app start,
+ * cached and applied to any number of layouts with
+ * {@link BottomTabLayout#setTabBarSpec(TabBarSpec)}.
+ *
+ * <p>Settings which are not set on the {@link Builder} keep the value the layout already has.</p>
+ */
+public final class TabBarSpec {
+    static final int SET_MODE = 1;
+    static final int SET_GRAVITY = 1 << 1;
+    static final int SET_PADDING = 1 << 2;
+    static final int SET_TEXT_COLORS = 1 << 3;
+    static final int SET_SHOW_INDICATOR = 1 << 4;
+    static final int SET_INDICATOR_COLOR = 1 << 5;
+    static final int SET_INDICATOR_HEIGHT = 1 << 6;
+    static final int SET_INDICATOR_POSITION = 1 << 7;
+
+    private final List<TabSpec> mTabs;
+    private final int mSelectedPosition;
+    private final int mSetFlags;
+
+    final int mode;
+    final int tabGravity;
+    final int tabPaddingStart;
+    final int tabPaddingTop;
+    final int tabPaddingEnd;
+    final int tabPaddingBottom;
+    final ColorStateList tabTextColors;
+    final boolean showTabIndicator;
+    final int tabIndicatorColor;
+    final int tabIndicatorHeight;
+    final int tabIndicatorPosition;
+
+    private TabBarSpec(Builder builder) {
+        mTabs = Collections.unmodifiableList(new ArrayList<>(builder.mTabs));
+        mSelectedPosition = builder.mSelectedPosition;
+        mSetFlags = builder.mSetFlags;
+        mode = builder.mMode;
+        tabGravity = builder.mTabGravity;
+        tabPaddingStart = builder.mTabPaddingStart;
+        tabPaddingTop = builder.mTabPaddingTop;
+        tabPaddingEnd = builder.mTabPaddingEnd;
+        tabPaddingBottom = builder.mTabPaddingBottom;
+        tabTextColors = builder.mTabTextColors;
+        showTabIndicator = builder.mShowTabIndicator;
+        tabIndicatorColor = builder.mTabIndicatorColor;
+        tabIndicatorHeight = builder.mTabIndicatorHeight;
+        tabIndicatorPosition = builder.mTabIndicatorPosition;
+    }
+
+    boolean isSet(int flag) {
+        return (mSetFlags & flag) != 0;
+    }
+
+    /**
+     * Returns the tabs of this spec, the list can't be modified.
+     */
+    @NonNull
+    public List<TabSpec> getTabs() {
+        return mTabs;
+    }
+
+    /**
+     * Returns the position of the tab selected when the spec is applied.
+     */
+    public int getSelectedPosition() {
+        return mSelectedPosition;
+    }
+
+    /**
+     * An immutable tab of a {@link TabBarSpec}, turned into a {@link TabView.Tab} of the layout
+     * the spec is applied to. Icons and texts given by resource id are resolved at that time.
+     */
+    public static final class TabSpec {
+        private final long mId;
+        private final int mIconResId;
+        private final Uri mIconUri;
+        private final CharSequence mText;
+        private final int mTextResId;
+
+        private TabSpec(long id, int iconResId, Uri iconUri, CharSequence text, int textResId) {
+            mId = id;
+            mIconResId = iconResId;
+            mIconUri = iconUri;
+            mText = text;
+            mTextResId = textResId;
+        }
+
+        public static TabSpec of(int iconResId, int textResId) {
+            return new TabSpec(TabView.Tab.NO_ID, iconResId, null, null, textResId);
+        }
+
+        public static TabSpec of(int iconResId, @Nullable CharSequence text) {
+            return new TabSpec(TabView.Tab.NO_ID, iconResId, null, text, 0);
+        }
+
+        public static TabSpec of(@Nullable Uri iconUri, @Nullable CharSequence text) {
+            return new TabSpec(TabView.Tab.NO_ID, 0, iconUri, text, 0);
+        }
+
+        /**
+         * Returns a copy of this tab with the stable id <code>id</code>, see
+         * {@link TabView.Tab#setId(long)}.
+         */
+        public TabSpec withId(long id) {
+            return new TabSpec(id, mIconResId, mIconUri, mText, mTextResId);
+        }
+
+        public long getId() {
+            return mId;
+        }
+
+        public int getIconResId() {
+            return mIconResId;
+        }
+
+        @Nullable
+        public Uri getIconUri() {
+            return mIconUri;
+        }
+
+        @Nullable
+        public CharSequence getText() {
+            return mText;
+        }
+
+        public int getTextResId() {
+            return mTextResId;
+        }
+    }
+
+    /**
+     * Builds {@link TabBarSpec}s. Not thread safe, but the built specs are.
+     */
+    public static final class Builder {
+        private final ArrayList<TabSpec> mTabs = new ArrayList<>();
+        private int mSelectedPosition;
+        private int mSetFlags;
+
+        private int mMode;
+        private int mTabGravity;
+        private int mTabPaddingStart;
+        private int mTabPaddingTop;
+        private int mTabPaddingEnd;
+        private int mTabPaddingBottom;
+        private ColorStateList mTabTextColors;
+        private boolean mShowTabIndicator;
+        private int mTabIndicatorColor;
+        private int mTabIndicatorHeight;
+        private int mTabIndicatorPosition;
+
+        public Builder addTab(@NonNull TabSpec tab) {
+            mTabs.add(tab);
+            return this;
+        }
+
+        public Builder setSelectedPosition(int position) {
+            mSelectedPosition = position;
+            return this;
+        }
+
+        /**
+         * @param mode {@link BottomTabLayout#MODE_FIXED} or
+         *             {@link BottomTabLayout#MODE_SCROLLABLE}
+         */
+        public Builder setTabMode(int mode) {
+            mMode = mode;
+            mSetFlags |= SET_MODE;
+            return this;
+        }
+
+        /**
+         * @param gravity {@link BottomTabLayout#GRAVITY_FILL} or
+         *                {@link BottomTabLayout#GRAVITY_CENTER}
+         */
+        public Builder setTabGravity(int gravity) {
+            mTabGravity = gravity;
+            mSetFlags |= SET_GRAVITY;
+            return this;
+        }
+
+        /**
+         * Set the padding of every tab, in pixels.
+         */
+        public Builder setTabPadding(int start, int top, int end, int bottom) {
+            mTabPaddingStart = start;
+            mTabPaddingTop = top;
+            mTabPaddingEnd = end;
+            mTabPaddingBottom = bottom;
+            mSetFlags |= SET_PADDING;
+            return this;
+        }
+
+        public Builder setTabTextColors(@NonNull ColorStateList colors) {
+            mTabTextColors = colors;
+            mSetFlags |= SET_TEXT_COLORS;
+            return this;
+        }
+
+        public Builder setTabTextColors(int normalColor, int selectedColor) {
+            return setTabTextColors(BottomTabLayout.createColorStateList(normalColor,
+                    selectedColor));
+        }
+
+        public Builder setShowTabIndicator(boolean show) {
+            mShowTabIndicator = show;
+            mSetFlags |= SET_SHOW_INDICATOR;
+            return this;
+        }
+
+        public Builder setTabIndicatorColor(int color) {
+            mTabIndicatorColor = color;
+            mSetFlags |= SET_INDICATOR_COLOR;
+            return this;
+        }
+
+        /**
+         * Set the height of the indicator, in pixels.
+         */
+        public Builder setTabIndicatorHeight(int height) {
+            mTabIndicatorHeight = height;
+            mSetFlags |= SET_INDICATOR_HEIGHT;
+            return this;
+        }
+
+        /**
+         * @param position 0 to draw the indicator at the top of the tabs, 1 at the bottom
+         */
+        public Builder setTabIndicatorPosition(int position) {
+            mTabIndicatorPosition = position;
+            mSetFlags |= SET_INDICATOR_POSITION;
+            return this;
+        }
+
+        public TabBarSpec build() {
+            return new TabBarSpec(this);
+        }
+    }
+}
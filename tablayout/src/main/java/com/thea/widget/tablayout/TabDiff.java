@@ -0,0 +1,139 @@
+package com.thea.widget.tablayout;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Minimal set of removals, moves and inserts turning an old list of tab keys into a new one.
+ * Tabs kept in both lists whose relative order is part of the longest increasing subsequence
+ * stay where they are, every other kept tab is moved exactly once.
+ */
+final class TabDiff {
+    static final int NO_POSITION = -1;
+
+    private final int[] mOldToNew;
+    private final int[] mNewToOld;
+    private final boolean[] mMoved;
+    private int mRemoveCount;
+    private int mInsertCount;
+    private int mMoveCount;
+
+    private TabDiff(int oldCount, int newCount) {
+        mOldToNew = new int[oldCount];
+        mNewToOld = new int[newCount];
+        mMoved = new boolean[newCount];
+        Arrays.fill(mOldToNew, NO_POSITION);
+        Arrays.fill(mNewToOld, NO_POSITION);
+    }
+
+    /**
+     * @param oldKeys Keys identifying the current tabs, each key must be unique
+     * @param newKeys Keys identifying the new tabs, each key must be unique
+     */
+    static TabDiff calculate(List<?> oldKeys, List<?> newKeys) {
+        final int oldCount = oldKeys.size();
+        final int newCount = newKeys.size();
+        final TabDiff diff = new TabDiff(oldCount, newCount);
+
+        final HashMap<Object, Integer> oldPositions = new HashMap<>(oldCount * 2);
+        for (int i = 0; i < oldCount; i++) {
+            if (oldPositions.put(oldKeys.get(i), i) != null)
+                throw new IllegalArgumentException("Duplicate tab key " + oldKeys.get(i));
+        }
+        for (int i = 0; i < newCount; i++) {
+            final Integer oldPosition = oldPositions.get(newKeys.get(i));
+            if (oldPosition == null) {
+                diff.mInsertCount++;
+            } else if (diff.mOldToNew[oldPosition] != NO_POSITION) {
+                throw new IllegalArgumentException("Duplicate tab key " + newKeys.get(i));
+            } else {
+                diff.mNewToOld[i] = oldPosition;
+                diff.mOldToNew[oldPosition] = i;
+            }
+        }
+        for (int i = 0; i < oldCount; i++) {
+            if (diff.mOldToNew[i] == NO_POSITION)
+                diff.mRemoveCount++;
+        }
+
+        diff.findMoves();
+        return diff;
+    }
+
+    /**
+     * Mark the kept tabs outside of the longest run whose old positions increase as moved.
+     */
+    private void findMoves() {
+        final int newCount = mNewToOld.length;
+        // tails[k]: new position ending the best increasing run of length k + 1
+        final int[] tails = new int[newCount];
+        final int[] previous = new int[newCount];
+        int length = 0;
+
+        for (int i = 0; i < newCount; i++) {
+            final int oldPosition = mNewToOld[i];
+            if (oldPosition == NO_POSITION)
+                continue;
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (mNewToOld[tails[mid]] < oldPosition)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            previous[i] = low > 0 ? tails[low - 1] : NO_POSITION;
+            tails[low] = i;
+            if (low == length)
+                length++;
+        }
+
+        for (int i = 0; i < newCount; i++)
+            mMoved[i] = mNewToOld[i] != NO_POSITION;
+        for (int i = length > 0 ? tails[length - 1] : NO_POSITION; i != NO_POSITION; i = previous[i])
+            mMoved[i] = false;
+        mMoveCount = newCount - mInsertCount - length;
+    }
+
+    /**
+     * Returns the old position of the tab at <code>newPosition</code>, or {@link #NO_POSITION}
+     * if it is inserted.
+     */
+    int getOldPosition(int newPosition) {
+        return mNewToOld[newPosition];
+    }
+
+    /**
+     * Returns the new position of the tab at <code>oldPosition</code>, or {@link #NO_POSITION}
+     * if it is removed.
+     */
+    int getNewPosition(int oldPosition) {
+        return mOldToNew[oldPosition];
+    }
+
+    boolean isRemoved(int oldPosition) {
+        return mOldToNew[oldPosition] == NO_POSITION;
+    }
+
+    boolean isInserted(int newPosition) {
+        return mNewToOld[newPosition] == NO_POSITION;
+    }
+
+    boolean isMoved(int newPosition) {
+        return mMoved[newPosition];
+    }
+
+    int getRemoveCount() {
+        return mRemoveCount;
+    }
+
+    int getInsertCount() {
+        return mInsertCount;
+    }
+
+    int getMoveCount() {
+        return mMoveCount;
+    }
+}
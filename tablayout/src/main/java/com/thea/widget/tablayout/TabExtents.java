@@ -0,0 +1,147 @@
+package com.thea.widget.tablayout;
+
+import java.util.Arrays;
+
+/**
+ * Cached horizontal extents (left edge and width) of every tab in a {@link BottomTabLayout},
+ * indexed by tab position. Lets scroll and indicator math run without touching live child views.
+ */
+final class TabExtents {
+    static final int INVALID_WIDTH = -1;
+
+    private int[] mLefts = new int[16];
+    private int[] mWidths = new int[16];
+    private int mCount;
+
+    int getCount() {
+        return mCount;
+    }
+
+    void clear() {
+        mCount = 0;
+    }
+
+    /**
+     * Resize to <code>count</code> entries. New entries are marked as not yet measured.
+     */
+    void setCount(int count) {
+        ensureCapacity(count);
+        if (count > mCount) {
+            Arrays.fill(mLefts, mCount, count, 0);
+            Arrays.fill(mWidths, mCount, count, INVALID_WIDTH);
+        }
+        mCount = count;
+    }
+
+    void insert(int index, int width) {
+        ensureCapacity(mCount + 1);
+        System.arraycopy(mLefts, index, mLefts, index + 1, mCount - index);
+        System.arraycopy(mWidths, index, mWidths, index + 1, mCount - index);
+        mLefts[index] = 0;
+        mWidths[index] = width;
+        mCount++;
+    }
+
+    void remove(int index) {
+        System.arraycopy(mLefts, index + 1, mLefts, index, mCount - index - 1);
+        System.arraycopy(mWidths, index + 1, mWidths, index, mCount - index - 1);
+        mCount--;
+    }
+
+    void set(int index, int left, int width) {
+        mLefts[index] = left;
+        mWidths[index] = width;
+    }
+
+    void setWidth(int index, int width) {
+        mWidths[index] = width;
+    }
+
+    void invalidateWidths() {
+        Arrays.fill(mWidths, 0, mCount, INVALID_WIDTH);
+    }
+
+    boolean hasInvalidWidths() {
+        for (int i = 0; i < mCount; i++) {
+            if (mWidths[i] == INVALID_WIDTH)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the tab at <code>index</code> exists and has a non-empty extent.
+     */
+    boolean hasExtent(int index) {
+        return index >= 0 && index < mCount && mWidths[index] > 0;
+    }
+
+    int getLeft(int index) {
+        return mLefts[index];
+    }
+
+    int getWidth(int index) {
+        return mWidths[index];
+    }
+
+    int getRight(int index) {
+        return mLefts[index] + mWidths[index];
+    }
+
+    /**
+     * Place the tabs one after another starting at <code>start</code>.
+     *
+     * @return The right edge of the last tab
+     */
+    int layout(int start) {
+        int left = start;
+        for (int i = 0; i < mCount; i++) {
+            mLefts[i] = left;
+            left += Math.max(0, mWidths[i]);
+        }
+        return left;
+    }
+
+    /**
+     * Returns the position of the tab containing <code>x</code>, clamped to the first and
+     * last tab, or -1 if there are no tabs.
+     */
+    int indexAt(int x) {
+        if (mCount == 0)
+            return -1;
+        int low = 0;
+        int high = mCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (mLefts[mid] <= x)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the scroll x which centers the tab at <code>position</code>, moved towards the next
+     * tab by <code>positionOffset</code>, in a viewport of <code>viewportWidth</code>.
+     */
+    int calculateScrollX(int position, float positionOffset, int viewportWidth) {
+        if (position < 0 || position >= mCount)
+            return 0;
+        final int selectedWidth = Math.max(0, mWidths[position]);
+        final int nextWidth = position + 1 < mCount ? Math.max(0, mWidths[position + 1]) : 0;
+
+        return mLefts[position]
+                + ((int) ((selectedWidth + nextWidth) * positionOffset * 0.5f))
+                + (selectedWidth / 2)
+                - (viewportWidth / 2);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mLefts.length) {
+            final int newLength = Math.max(capacity, mLefts.length * 2);
+            mLefts = Arrays.copyOf(mLefts, newLength);
+            mWidths = Arrays.copyOf(mWidths, newLength);
+        }
+    }
+}
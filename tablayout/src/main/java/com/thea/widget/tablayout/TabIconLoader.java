@@ -0,0 +1,264 @@
+package com.thea.widget.tablayout;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the lazy icons of {@link TabView.Tab}s on a background thread and caches them for every
+ * {@link BottomTabLayout} of the process.
+ *
+ * <p>Icons from a {@link Uri} are decoded and scaled down to the icon size, resource icons are
+ * inflated and drawn at the icon size, and both are cached as bitmaps, bounded by their size in
+ * bytes. Resource icons which depend on the view's state or theme, like state lists, are cached
+ * as {@link Drawable.ConstantState}s instead, so each view builds its own from the inflated
+ * resource.</p>
+ */
+public final class TabIconLoader {
+    private static final String TAG = "TabIconLoader";
+    private static final int DEFAULT_BITMAP_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_DRAWABLE_CACHE_SIZE = 64;
+
+    private static TabIconLoader sInstance;
+
+    interface Callback {
+        void onIconLoaded(Drawable icon);
+    }
+
+    private final Context mContext;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor;
+
+    private final LruCache<Integer, Drawable.ConstantState> mDrawableCache;
+    private final LruCache<String, Bitmap> mBitmapCache;
+
+    // Callbacks waiting for an icon already being loaded, only touched on the main thread
+    private final HashMap<String, ArrayList<Callback>> mPendingCallbacks = new HashMap<>();
+
+    public static synchronized TabIconLoader get(Context context) {
+        if (sInstance == null)
+            sInstance = new TabIconLoader(context.getApplicationContext(),
+                    DEFAULT_DRAWABLE_CACHE_SIZE, DEFAULT_BITMAP_CACHE_BYTES);
+        return sInstance;
+    }
+
+    private TabIconLoader(Context context, int drawableCacheSize, int bitmapCacheBytes) {
+        mContext = context;
+        mDrawableCache = new LruCache<>(drawableCacheSize);
+        mBitmapCache = new LruCache<String, Bitmap>(bitmapCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        };
+        mExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "TabIconLoader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the cached icon of <code>tab</code> at <code>size</code> pixels, resolved against
+     * <code>context</code>, or null if it has not been loaded yet.
+     */
+    Drawable getCachedIcon(Context context, TabView.Tab tab, int size) {
+        final Uri uri = tab.getIconUri();
+        final int resId = tab.getIconResId();
+        final Bitmap bitmap = mBitmapCache.get(
+                uri != null ? getBitmapKey(uri, size) : getBitmapKey(resId, size));
+        if (bitmap != null)
+            return new BitmapDrawable(context.getResources(), bitmap);
+        final Drawable.ConstantState state = uri == null ? mDrawableCache.get(resId) : null;
+        return state != null ? newDrawable(state, context) : null;
+    }
+
+    /**
+     * Load the icon of <code>tab</code> in the background and pass it to <code>callback</code>
+     * on the main thread. Must be called on the main thread. The icon passed is resolved
+     * against the application context, callbacks should build their own from the cache with
+     * {@link #getCachedIcon(Context, TabView.Tab, int)}.
+     */
+    void loadIcon(final TabView.Tab tab, final int size, Callback callback) {
+        final Uri uri = tab.getIconUri();
+        final int resId = tab.getIconResId();
+        final String key = uri != null ? getBitmapKey(uri, size) : getBitmapKey(resId, size);
+
+        ArrayList<Callback> callbacks = mPendingCallbacks.get(key);
+        if (callbacks != null) {
+            // Already loading, just wait for it
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<>(1);
+        callbacks.add(callback);
+        mPendingCallbacks.put(key, callbacks);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Drawable icon = uri != null
+                        ? decodeBitmap(uri, size) : loadDrawable(resId, size);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatchIcon(key, icon);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop every cached icon.
+     */
+    public void clear() {
+        mDrawableCache.evictAll();
+        mBitmapCache.evictAll();
+    }
+
+    public int getHitCount() {
+        return mDrawableCache.hitCount() + mBitmapCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mDrawableCache.missCount() + mBitmapCache.missCount();
+    }
+
+    private void dispatchIcon(String key, Drawable icon) {
+        final ArrayList<Callback> callbacks = mPendingCallbacks.remove(key);
+        if (callbacks == null)
+            return;
+        for (int i = 0, count = callbacks.size(); i < count; i++) {
+            Drawable callbackIcon = icon;
+            if (icon != null && i > 0 && icon.getConstantState() != null)
+                // Every view needs its own drawable to keep its own state
+                callbackIcon = icon.getConstantState().newDrawable(mContext.getResources());
+            callbacks.get(i).onIconLoaded(callbackIcon);
+        }
+    }
+
+    private Drawable loadDrawable(int resId, int size) {
+        final Drawable drawable = ContextCompat.getDrawable(mContext, resId);
+        if (drawable == null)
+            return null;
+        if (!drawable.isStateful() && !canApplyTheme(drawable)) {
+            // It looks the same in every view, draw it once
+            final Bitmap bitmap = rasterize(drawable, size);
+            mBitmapCache.put(getBitmapKey(resId, size), bitmap);
+            return new BitmapDrawable(mContext.getResources(), bitmap);
+        }
+        if (drawable.getConstantState() != null)
+            mDrawableCache.put(resId, drawable.getConstantState());
+        return drawable;
+    }
+
+    /**
+     * Draw <code>drawable</code> into a bitmap, shrunk to fit <code>size</code> like the
+     * centerInside icon view.
+     */
+    private static Bitmap rasterize(Drawable drawable, int size) {
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (width <= 0 || height <= 0) {
+            width = height = size;
+        } else if (width > size || height > size) {
+            final float scale = Math.min((float) size / width, (float) size / height);
+            width = Math.max(1, Math.round(width * scale));
+            height = Math.max(1, Math.round(height * scale));
+        }
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean canApplyTheme(Drawable drawable) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && drawable.canApplyTheme();
+    }
+
+    /**
+     * Build a drawable of an inflated resource icon for <code>context</code>, like
+     * TintManager.getDrawable() does for icons, which it never tints as they aren't AppCompat's.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static Drawable newDrawable(Drawable.ConstantState state, Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
+            return state.newDrawable(context.getResources(), context.getTheme());
+        return state.newDrawable(context.getResources());
+    }
+
+    private Drawable decodeBitmap(Uri uri, int size) {
+        try {
+            final BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeStream(uri, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0)
+                return null;
+
+            // Decode at the smallest power of two scale still covering the icon size
+            options.inSampleSize = 1;
+            while (options.outWidth / (options.inSampleSize * 2) >= size
+                    && options.outHeight / (options.inSampleSize * 2) >= size)
+                options.inSampleSize *= 2;
+            options.inJustDecodeBounds = false;
+            Bitmap bitmap = decodeStream(uri, options);
+            if (bitmap == null)
+                return null;
+
+            final float scale = Math.min((float) size / bitmap.getWidth(),
+                    (float) size / bitmap.getHeight());
+            if (scale < 1f)
+                bitmap = Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                        Math.round(bitmap.getHeight() * scale), true);
+            mBitmapCache.put(getBitmapKey(uri, size), bitmap);
+            return new BitmapDrawable(mContext.getResources(), bitmap);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to load tab icon " + uri, e);
+            return null;
+        }
+    }
+
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) throws IOException {
+        final InputStream in = mContext.getContentResolver().openInputStream(uri);
+        if (in == null)
+            return null;
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String getBitmapKey(Uri uri, int size) {
+        return uri.toString() + '@' + size;
+    }
+
+    private static String getBitmapKey(int resId, int size) {
+        // Uris always have a scheme, this can't be mistaken for one
+        return "#" + resId + '@' + size;
+    }
+}
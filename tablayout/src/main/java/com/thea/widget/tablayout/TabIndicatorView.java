@@ -0,0 +1,41 @@
+package com.thea.widget.tablayout;
+
+import android.content.Context;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+/**
+ * The selected tab indicator of a {@link BottomTabLayout}, drawn in its own layer on top of the
+ * tabs. The view is laid out one pixel wide and moved and stretched with its translation and
+ * scale, so moving the indicator only updates render properties and never redraws the tabs.
+ */
+class TabIndicatorView extends View {
+    private static final int UNIT_WIDTH = 1;
+
+    TabIndicatorView(Context context) {
+        super(context);
+        ViewCompat.setPivotX(this, 0);
+    }
+
+    /**
+     * Lay the indicator out between <code>top</code> and <code>bottom</code> of the tab strip.
+     */
+    void layoutVertically(int top, int bottom) {
+        if (getTop() != top || getBottom() != bottom || getWidth() != UNIT_WIDTH)
+            layout(0, top, UNIT_WIDTH, bottom);
+    }
+
+    /**
+     * Move the indicator to span from <code>left</code> to <code>right</code>, hiding it if the
+     * span is empty.
+     */
+    void setHorizontalBounds(int left, int right) {
+        if (left >= 0 && right > left) {
+            ViewCompat.setTranslationX(this, left);
+            ViewCompat.setScaleX(this, (right - left) / (float) UNIT_WIDTH);
+            setVisibility(VISIBLE);
+        } else {
+            setVisibility(INVISIBLE);
+        }
+    }
+}
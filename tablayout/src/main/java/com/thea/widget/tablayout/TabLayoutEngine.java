@@ -0,0 +1,163 @@
+package com.thea.widget.tablayout;
+
+/**
+ * Distributes the width of a tab strip among its tabs and places them, without touching any
+ * view: the strip measures the tabs' content widths, lets the engine settle every tab's width
+ * and position in one pass and then measures and lays out each tab once with the result.
+ * Scroll offsets and indicator bounds are derived from the same extents.
+ *
+ * <p>Modes and gravities use the values of {@link BottomTabLayout#MODE_SCROLLABLE},
+ * {@link BottomTabLayout#MODE_FIXED}, {@link BottomTabLayout#GRAVITY_FILL} and
+ * {@link BottomTabLayout#GRAVITY_CENTER}.</p>
+ */
+final class TabLayoutEngine {
+    static final int MODE_SCROLLABLE = 0;
+    static final int MODE_FIXED = 1;
+    static final int GRAVITY_FILL = 0;
+    static final int GRAVITY_CENTER = 1;
+
+    /** Available width of a strip whose width isn't bounded. */
+    static final int UNBOUNDED = -1;
+
+    private final TabExtents mExtents = new TabExtents();
+    private int mMode;
+    private int mGravity;
+    private int mContentWidth;
+
+    TabExtents getExtents() {
+        return mExtents;
+    }
+
+    /**
+     * Returns whether {@link #measure} reads the tabs' content widths, fixed tabs filling a
+     * bounded strip are sized regardless of their content.
+     */
+    static boolean needsContentWidths(int mode, int gravity, int availableWidth) {
+        return mode != MODE_FIXED || gravity != GRAVITY_FILL || availableWidth == UNBOUNDED;
+    }
+
+    /**
+     * Settle the width of every tab.
+     *
+     * @param contentWidths The wrap content widths of the tabs, only read if
+     *                      {@link #needsContentWidths} says so
+     * @param count The number of tabs
+     * @param availableWidth The width available to the tabs, or {@link #UNBOUNDED}
+     * @param gutter The minimum space kept on either side of centered fixed tabs
+     * @return The gravity actually used, centered fixed tabs which don't fit within the gutters
+     *         fill the strip instead
+     */
+    int measure(int[] contentWidths, int count, int mode, int gravity, int availableWidth,
+            int gutter) {
+        mExtents.setCount(count);
+        mMode = mode;
+        mGravity = gravity;
+
+        if (mode == MODE_FIXED && gravity == GRAVITY_CENTER && count > 0) {
+            int largestWidth = 0;
+            for (int i = 0; i < count; i++)
+                largestWidth = Math.max(largestWidth, contentWidths[i]);
+            if (availableWidth == UNBOUNDED
+                    || (long) largestWidth * count <= availableWidth - gutter * 2) {
+                // Every tab gets the width of the widest one
+                for (int i = 0; i < count; i++)
+                    mExtents.setWidth(i, largestWidth);
+                mContentWidth = largestWidth * count;
+                return GRAVITY_CENTER;
+            }
+            mGravity = GRAVITY_FILL;
+        }
+
+        if (mode == MODE_FIXED && mGravity == GRAVITY_FILL && availableWidth != UNBOUNDED) {
+            // Share the width out like equally weighted children of a LinearLayout
+            int remaining = availableWidth;
+            for (int i = 0; i < count; i++) {
+                final int share = remaining / (count - i);
+                mExtents.setWidth(i, share);
+                remaining -= share;
+            }
+            mContentWidth = count > 0 ? availableWidth : 0;
+        } else {
+            int total = 0;
+            for (int i = 0; i < count; i++) {
+                mExtents.setWidth(i, contentWidths[i]);
+                total += contentWidths[i];
+            }
+            mContentWidth = total;
+        }
+        return mGravity;
+    }
+
+    /**
+     * Returns the width of all tabs together, as of the last {@link #measure}.
+     */
+    int getContentWidth() {
+        return mContentWidth;
+    }
+
+    /**
+     * Place the tabs between <code>left</code> and <code>right</code>, fixed tabs are centered.
+     *
+     * @param rtl Whether the first tab is placed at the right
+     */
+    void layout(int left, int right, boolean rtl) {
+        final int offset = mMode == MODE_FIXED
+                ? Math.max(0, (right - left - mContentWidth) / 2) : 0;
+        if (!rtl) {
+            mExtents.layout(left + offset);
+            return;
+        }
+        int end = right - offset;
+        for (int i = 0, count = mExtents.getCount(); i < count; i++) {
+            final int width = Math.max(0, mExtents.getWidth(i));
+            end -= width;
+            mExtents.set(i, end, width);
+        }
+    }
+
+    /**
+     * Returns the scroll x which centers the tab at <code>position</code>, moved towards the
+     * next tab by <code>positionOffset</code>. Fixed tabs never scroll.
+     */
+    int calculateScrollX(int mode, int position, float positionOffset, int viewportWidth) {
+        if (mode != MODE_SCROLLABLE)
+            return 0;
+        return mExtents.calculateScrollX(position, positionOffset, viewportWidth);
+    }
+
+    /**
+     * Returns the scale of a selected tab's icon <code>fraction</code> into its selection
+     * animation, which grows the icon to <code>peakScale</code> half way and back.
+     */
+    static float getSelectedIconScale(float fraction, float peakScale) {
+        final float progress = fraction < 0.5f ? fraction * 2f : (1f - fraction) * 2f;
+        return 1f + (peakScale - 1f) * progress;
+    }
+
+    /**
+     * Returns the left of the indicator under the tab at <code>position</code>, moved towards
+     * the next tab by <code>positionOffset</code>, or -1 if the tab has no extent yet.
+     */
+    int getIndicatorLeft(int position, float positionOffset) {
+        if (!mExtents.hasExtent(position))
+            return -1;
+        final int left = mExtents.getLeft(position);
+        if (positionOffset > 0f && position < mExtents.getCount() - 1)
+            return (int) (positionOffset * mExtents.getLeft(position + 1)
+                    + (1.0f - positionOffset) * left);
+        return left;
+    }
+
+    /**
+     * Returns the right of the indicator, see {@link #getIndicatorLeft(int, float)}.
+     */
+    int getIndicatorRight(int position, float positionOffset) {
+        if (!mExtents.hasExtent(position))
+            return -1;
+        final int right = mExtents.getRight(position);
+        if (positionOffset > 0f && position < mExtents.getCount() - 1)
+            return (int) (positionOffset * mExtents.getRight(position + 1)
+                    + (1.0f - positionOffset) * right);
+        return right;
+    }
+}
@@ -0,0 +1,132 @@
+package com.thea.widget.tablayout;
+
+/**
+ * Timings of a {@link BottomTabLayout}'s operations collected while a
+ * {@link BottomTabLayout.OnMetricsListener} is set, kept as one {@link Histogram} per operation.
+ * Durations are recorded in microseconds, {@link #OP_DROPPED_FRAMES} in frames.
+ *
+ * <p>Only touched on the main thread.</p>
+ */
+public class TabMetrics {
+    /** Creating or rebinding the {@link TabView} of a tab. */
+    public static final int OP_TAB_VIEW_CREATION = 0;
+    /** Measuring the tab strip. */
+    public static final int OP_MEASURE = 1;
+    /** Laying out the tab strip. */
+    public static final int OP_LAYOUT = 2;
+    /** Drawing the tab strip. */
+    public static final int OP_DRAW = 3;
+    /** {@link BottomTabLayout#selectTab(TabView.Tab)}, including starting its animations. */
+    public static final int OP_SELECT_TAB = 4;
+    /** From selecting a tab until the frame showing the selection starts drawing. */
+    public static final int OP_SELECTION_LATENCY = 5;
+    /** {@link BottomTabLayout#setScrollPosition(int, float, boolean)}, e.g. for page scrolls. */
+    public static final int OP_SCROLL_POSITION = 6;
+    /** Frames dropped during one indicator animation. */
+    public static final int OP_DROPPED_FRAMES = 7;
+
+    private static final int OP_COUNT = 8;
+
+    private final Histogram[] mHistograms = new Histogram[OP_COUNT];
+
+    TabMetrics() {
+        for (int i = 0; i < OP_COUNT; i++)
+            mHistograms[i] = new Histogram();
+    }
+
+    /**
+     * Returns the histogram of <code>operation</code>, one of the <code>OP_*</code> constants.
+     */
+    public Histogram getHistogram(int operation) {
+        return mHistograms[operation];
+    }
+
+    /**
+     * Clear every histogram, e.g. once they've been forwarded.
+     */
+    public void reset() {
+        for (int i = 0; i < OP_COUNT; i++)
+            mHistograms[i].reset();
+    }
+
+    void record(int operation, long value) {
+        mHistograms[operation].record(value);
+    }
+
+    void recordSince(int operation, long startNanos) {
+        mHistograms[operation].record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * Counts of recorded values in power of two buckets: bucket 0 holds 0, bucket
+     * <code>i</code> holds the values from <code>2<sup>i-1</sup></code> up to
+     * <code>2<sup>i</sup> - 1</code>, the last bucket also holds everything above.
+     */
+    public static class Histogram {
+        public static final int BUCKET_COUNT = 32;
+
+        private final long[] mBuckets = new long[BUCKET_COUNT];
+        private long mCount;
+        private long mSum;
+        private long mMax;
+
+        void record(long value) {
+            if (value < 0)
+                value = 0;
+            final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(value));
+            mBuckets[bucket]++;
+            mCount++;
+            mSum += value;
+            if (value > mMax)
+                mMax = value;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++)
+                mBuckets[i] = 0;
+            mCount = mSum = mMax = 0;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public long getBucketCount(int bucket) {
+            return mBuckets[bucket];
+        }
+
+        /**
+         * Returns the largest value counted in <code>bucket</code>.
+         */
+        public static long getBucketUpperBound(int bucket) {
+            return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the <code>percentile</code>th value,
+         * capped at the largest recorded value.
+         *
+         * @param percentile Value from [0, 100]
+         */
+        public long getPercentile(float percentile) {
+            if (mCount == 0)
+                return 0;
+            final long rank = Math.max(1, (long) Math.ceil(mCount * percentile / 100f));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank)
+                    return Math.min(getBucketUpperBound(i), mMax);
+            }
+            return mMax;
+        }
+    }
+}
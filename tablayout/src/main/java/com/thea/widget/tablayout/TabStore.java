@@ -0,0 +1,239 @@
+package com.thea.widget.tablayout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The tabs of a {@link BottomTabLayout} in order, indexed by id. Free of Android classes so it
+ * can be benchmarked on the JVM, the tabs are {@link Entry entries}.
+ *
+ * <p>Positions are recomputed lazily: adding, removing or moving a tab only marks the positions
+ * from there on as stale, and they are renumbered once the next time a stale position is read,
+ * so {@link #indexOf(Entry)} is constant time between changes. Whether any tab has both an
+ * icon and a text is kept up to date as tabs are added, removed and changed, see
+ * {@link TabView.Tab}'s setters.</p>
+ *
+ * <p>A tab belongs to at most one store at a time, it has to be removed from a store before it
+ * can be added to another one.</p>
+ */
+final class TabStore<T extends TabStore.Entry> {
+    /** Same as {@link TabView.Tab#NO_ID}. */
+    static final long NO_ID = -1;
+    /** Same as {@link TabView.Tab#INVALID_POSITION}. */
+    static final int INVALID_POSITION = -1;
+
+    /**
+     * A tab as far as the store is concerned, holding the store's bookkeeping.
+     */
+    abstract static class Entry {
+        private TabStore<?> mStore;
+        private int mStoredPosition = INVALID_POSITION;
+
+        /**
+         * Returns the stable id of the tab, or {@link #NO_ID}.
+         */
+        abstract long getId();
+
+        abstract boolean hasIconAndText();
+
+        /**
+         * Returns the store holding this tab, or null.
+         */
+        TabStore<?> getStore() {
+            return mStore;
+        }
+    }
+
+    /**
+     * Notified when the content of a tab in the store changes.
+     */
+    interface ContentObserver<T> {
+        /**
+         * @param changes What changed, as flags defined by the tabs
+         */
+        void onTabContentChanged(T tab, int changes);
+    }
+
+    private final ArrayList<T> mTabs = new ArrayList<>();
+    private final HashMap<Long, T> mTabsById = new HashMap<>();
+
+    // Positions of the tabs from this one on are stale
+    private int mFirstDirtyPosition = Integer.MAX_VALUE;
+    private int mIconAndTextCount;
+    private ContentObserver<T> mContentObserver;
+
+    int size() {
+        return mTabs.size();
+    }
+
+    boolean isEmpty() {
+        return mTabs.isEmpty();
+    }
+
+    T get(int position) {
+        return mTabs.get(position);
+    }
+
+    /**
+     * Returns the tab with the stable id <code>id</code>, or null if there is none.
+     */
+    T findById(long id) {
+        return id != NO_ID ? mTabsById.get(id) : null;
+    }
+
+    /**
+     * Returns the position of <code>tab</code>, or {@link #INVALID_POSITION} if it isn't in
+     * this store.
+     */
+    int indexOf(Entry tab) {
+        if (tab.mStore != this)
+            return INVALID_POSITION;
+        if (tab.mStoredPosition >= mFirstDirtyPosition)
+            renumber();
+        return tab.mStoredPosition;
+    }
+
+    /**
+     * Returns whether any tab has both an icon and a text.
+     */
+    boolean hasIconAndText() {
+        return mIconAndTextCount > 0;
+    }
+
+    /**
+     * @throws IllegalStateException If <code>tab</code> is in another store
+     */
+    void add(int position, T tab) {
+        checkNotInOtherStore(tab);
+        mTabs.add(position, tab);
+        attach(tab, position);
+        putId(tab);
+        if (tab.hasIconAndText())
+            mIconAndTextCount++;
+        // The tabs after it still hold the positions they had before, from this one on
+        if (position < mTabs.size() - 1)
+            invalidatePositions(position);
+    }
+
+    T remove(int position) {
+        final T tab = mTabs.remove(position);
+        detach(tab);
+        invalidatePositions(position);
+        return tab;
+    }
+
+    void move(int fromPosition, int toPosition) {
+        mTabs.add(toPosition, mTabs.remove(fromPosition));
+        invalidatePositions(Math.min(fromPosition, toPosition));
+    }
+
+    /**
+     * Put <code>tab</code> in place of the tab at <code>position</code>.
+     *
+     * @return The replaced tab
+     * @throws IllegalStateException If <code>tab</code> is in another store
+     */
+    T set(int position, T tab) {
+        checkNotInOtherStore(tab);
+        // Make sure the position handed to the new tab is current
+        if (position >= mFirstDirtyPosition)
+            renumber();
+        final T oldTab = mTabs.set(position, tab);
+        detach(oldTab);
+        attach(tab, position);
+        putId(tab);
+        if (tab.hasIconAndText())
+            mIconAndTextCount++;
+        return oldTab;
+    }
+
+    void clear() {
+        for (int i = 0, count = mTabs.size(); i < count; i++)
+            detachFromStore(mTabs.get(i));
+        mTabs.clear();
+        mTabsById.clear();
+        mFirstDirtyPosition = Integer.MAX_VALUE;
+        mIconAndTextCount = 0;
+    }
+
+    /**
+     * Returns a copy of the tabs in order.
+     */
+    ArrayList<T> copyTabs() {
+        return new ArrayList<>(mTabs);
+    }
+
+    void setContentObserver(ContentObserver<T> observer) {
+        mContentObserver = observer;
+    }
+
+    /**
+     * Called by a tab of this store whose icon or text changed.
+     */
+    void onTabContentChanged(Entry tab, boolean hadIconAndText, int changes) {
+        if (hadIconAndText != tab.hasIconAndText())
+            mIconAndTextCount += hadIconAndText ? -1 : 1;
+        if (mContentObserver != null) {
+            // Only our own tabs call this
+            @SuppressWarnings("unchecked")
+            final T ownTab = (T) tab;
+            mContentObserver.onTabContentChanged(ownTab, changes);
+        }
+    }
+
+    /**
+     * Called by a tab of this store whose id changed from <code>oldId</code>.
+     */
+    void onTabIdChanged(Entry tab, long oldId) {
+        if (oldId != NO_ID && mTabsById.get(oldId) == tab)
+            mTabsById.remove(oldId);
+        // Only our own tabs call this
+        @SuppressWarnings("unchecked")
+        final T ownTab = (T) tab;
+        putId(ownTab);
+    }
+
+    private void checkNotInOtherStore(Entry tab) {
+        if (tab.mStore != null && tab.mStore != this)
+            throw new IllegalStateException(
+                    "The tab is already in another layout, remove it from there first");
+    }
+
+    private void attach(Entry tab, int position) {
+        tab.mStore = this;
+        tab.mStoredPosition = position;
+    }
+
+    private void detachFromStore(Entry tab) {
+        // A tab taken over by another store isn't ours to reset
+        if (tab.mStore == this) {
+            tab.mStore = null;
+            tab.mStoredPosition = INVALID_POSITION;
+        }
+    }
+
+    private void detach(T tab) {
+        if (tab.hasIconAndText())
+            mIconAndTextCount--;
+        final long id = tab.getId();
+        if (id != NO_ID && mTabsById.get(id) == tab)
+            mTabsById.remove(id);
+        detachFromStore(tab);
+    }
+
+    private void putId(T tab) {
+        if (tab.getId() != NO_ID)
+            mTabsById.put(tab.getId(), tab);
+    }
+
+    private void invalidatePositions(int position) {
+        if (position < mTabs.size())
+            mFirstDirtyPosition = Math.min(mFirstDirtyPosition, position);
+    }
+
+    private void renumber() {
+        for (int i = mFirstDirtyPosition, count = mTabs.size(); i < count; i++)
+            ((Entry) mTabs.get(i)).mStoredPosition = i;
+        mFirstDirtyPosition = Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,196 @@
+package com.thea.widget.tablayout;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * The configuration a {@link BottomTabLayout} resolves from its attributes, style and theme.
+ *
+ * <p>Resolved styles are shared by every layout inflated with the same theme, default style
+ * attribute and <code>style</code>, as long as the layout sets no BottomTabLayout attribute
+ * inline, so e.g. a tab bar per list item resolves its style once instead of once per item.
+ * Entries go away with their theme, themes modified in place after a layout used them keep
+ * the styles resolved before. Everything here is immutable, {@link ColorStateList}s
+ * included.</p>
+ */
+final class TabStyle {
+    private static final WeakHashMap<Resources.Theme, HashMap<Long, TabStyle>> sCache =
+            new WeakHashMap<>();
+
+    final boolean showSelectedTabAnimation;
+    final boolean showTabIndicator;
+    final int tabIndicatorPosition;
+    final int tabIndicatorHeight;
+    final int tabIndicatorColor;
+
+    final int tabPaddingStart;
+    final int tabPaddingTop;
+    final int tabPaddingEnd;
+    final int tabPaddingBottom;
+
+    final int tabTextAppearance;
+    final ColorStateList tabTextColors;
+    final float tabTextSize;
+    final float tabTextMultiLineSize;
+
+    final int requestedTabMinWidth;
+    final int requestedTabMaxWidth;
+    final int scrollableTabMinWidth;
+
+    final int tabBackgroundResId;
+    final int tabIconPlaceholderResId;
+    final int tabBadgeColor;
+    final int tabBadgeTextColor;
+    final boolean asyncIconLoading;
+    final int contentInsetStart;
+    final int mode;
+    final int tabGravity;
+    final boolean virtualScrolling;
+    final boolean lazyTabViews;
+    final boolean inflationFree;
+    final boolean flatTabViews;
+    final boolean precomputeText;
+
+    /**
+     * Returns the style of a layout created with <code>attrs</code> and
+     * <code>defStyleAttr</code>, resolving it only if no equivalent layout did before.
+     */
+    static TabStyle obtain(Context context, AttributeSet attrs, int defStyleAttr) {
+        if (hasInlineAttributes(attrs))
+            return new TabStyle(context, attrs, defStyleAttr);
+
+        final Resources.Theme theme = context.getTheme();
+        final int styleResId = attrs != null ? attrs.getStyleAttribute() : 0;
+        final Long key = ((long) defStyleAttr << 32) | (styleResId & 0xffffffffL);
+        synchronized (sCache) {
+            HashMap<Long, TabStyle> styles = sCache.get(theme);
+            if (styles == null) {
+                styles = new HashMap<>();
+                sCache.put(theme, styles);
+            }
+            TabStyle style = styles.get(key);
+            if (style == null) {
+                style = new TabStyle(context, attrs, defStyleAttr);
+                styles.put(key, style);
+            }
+            return style;
+        }
+    }
+
+    /**
+     * Returns whether <code>attrs</code> sets any BottomTabLayout attribute itself, in which
+     * case the resolved style is specific to it.
+     */
+    private static boolean hasInlineAttributes(AttributeSet attrs) {
+        if (attrs == null)
+            return false;
+        final int[] styleable = R.styleable.BottomTabLayout;
+        for (int i = 0, count = attrs.getAttributeCount(); i < count; i++) {
+            final int attr = attrs.getAttributeNameResource(i);
+            for (int styleableAttr : styleable) {
+                if (attr == styleableAttr)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private TabStyle(Context context, AttributeSet attrs, int defStyleAttr) {
+        final TypedArray typedArray = context.obtainStyledAttributes(attrs,
+                R.styleable.BottomTabLayout, defStyleAttr, R.style.Widget_BottomTabLayout);
+        try {
+            showSelectedTabAnimation = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_showSelectedTabAnimation, false);
+            showTabIndicator = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_showTabIndicator, false);
+            tabIndicatorPosition = typedArray.getInt(
+                    R.styleable.BottomTabLayout_tabIndicatorPosition, 0);
+            tabIndicatorHeight = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabIndicatorHeight, 0);
+            tabIndicatorColor = typedArray.getColor(
+                    R.styleable.BottomTabLayout_tabIndicatorColor, 0);
+
+            final int tabPadding = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabPadding, 0);
+            tabPaddingStart = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabPaddingStart, tabPadding);
+            tabPaddingTop = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabPaddingTop, tabPadding);
+            tabPaddingEnd = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabPaddingEnd, tabPadding);
+            tabPaddingBottom = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabPaddingBottom, tabPadding);
+
+            tabTextAppearance = typedArray.getResourceId(
+                    R.styleable.BottomTabLayout_tabTextAppearance, R.style.TextAppearance_Tab);
+
+            // Text colors/sizes come from the text appearance first
+            ColorStateList textColors;
+            final TypedArray ta = context.obtainStyledAttributes(tabTextAppearance,
+                    R.styleable.TextAppearance);
+            try {
+                tabTextSize = ta.getDimensionPixelSize(
+                        R.styleable.TextAppearance_android_textSize, 0);
+                textColors = ta.getColorStateList(R.styleable.TextAppearance_android_textColor);
+            } finally {
+                ta.recycle();
+            }
+
+            if (typedArray.hasValue(R.styleable.BottomTabLayout_tabTextColor))
+                textColors = typedArray.getColorStateList(
+                        R.styleable.BottomTabLayout_tabTextColor);
+
+            if (typedArray.hasValue(R.styleable.BottomTabLayout_tabSelectedTextColor)) {
+                final int selected = typedArray.getColor(
+                        R.styleable.BottomTabLayout_tabSelectedTextColor, 0);
+                textColors = BottomTabLayout.createColorStateList(textColors.getDefaultColor(),
+                        selected);
+            }
+            tabTextColors = textColors;
+
+            requestedTabMinWidth = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabMinWidth, BottomTabLayout.INVALID_WIDTH);
+            requestedTabMaxWidth = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabMaxWidth, BottomTabLayout.INVALID_WIDTH);
+
+            tabBackgroundResId = typedArray.getResourceId(
+                    R.styleable.BottomTabLayout_tabBackground, 0);
+            tabIconPlaceholderResId = typedArray.getResourceId(
+                    R.styleable.BottomTabLayout_tabIconPlaceholder, 0);
+            tabBadgeColor = typedArray.getColor(
+                    R.styleable.BottomTabLayout_tabBadgeColor, 0);
+            tabBadgeTextColor = typedArray.getColor(
+                    R.styleable.BottomTabLayout_tabBadgeTextColor, 0);
+            asyncIconLoading = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_tabAsyncIcons, false);
+            contentInsetStart = typedArray.getDimensionPixelSize(
+                    R.styleable.BottomTabLayout_tabContentStart, 0);
+            mode = typedArray.getInt(R.styleable.BottomTabLayout_tabMode,
+                    BottomTabLayout.MODE_FIXED);
+            tabGravity = typedArray.getInt(R.styleable.BottomTabLayout_tabGravity,
+                    BottomTabLayout.GRAVITY_FILL);
+            virtualScrolling = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_tabVirtualScrolling, false);
+            lazyTabViews = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_tabLazyViews, false);
+            inflationFree = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_tabInflationFree, false);
+            flatTabViews = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_tabFlatViews, false);
+            precomputeText = typedArray.getBoolean(
+                    R.styleable.BottomTabLayout_tabPrecomputeText, false);
+        } finally {
+            typedArray.recycle();
+        }
+
+        final Resources res = context.getResources();
+        tabTextMultiLineSize = res.getDimensionPixelSize(R.dimen.tab_text_size_2line);
+        scrollableTabMinWidth = res.getDimensionPixelSize(R.dimen.tab_scrollable_min_width);
+    }
+}
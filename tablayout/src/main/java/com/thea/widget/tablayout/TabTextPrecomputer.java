@@ -0,0 +1,117 @@
+package com.thea.widget.tablayout;
+
+import android.content.Context;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Measures tab labels on a background thread so {@link TabView#onMeasure(int, int)} can pick
+ * the label's text size up front instead of measuring, probing the laid out text and measuring
+ * again. Measuring also warms the platform's text shaping cache for the main thread.
+ */
+final class TabTextPrecomputer {
+    private static ExecutorService sExecutor;
+
+    private final Context mContext;
+    private final TextPaint mPaint;
+    private final boolean mInflationFree;
+    private final float mTextSize;
+    private final float mMultiLineTextSize;
+    private final Locale mLocale;
+
+    /**
+     * @param context Context tab texts set by resource id are resolved against
+     * @param paint Paint of a tab label, copied so the background thread owns its own
+     * @param inflationFree Whether that label was built in code rather than inflated, see
+     *                      {@link TabView#createTextView}
+     */
+    TabTextPrecomputer(Context context, TextPaint paint, boolean inflationFree, float textSize,
+            float multiLineTextSize, Locale locale) {
+        mContext = context;
+        mPaint = new TextPaint(paint);
+        mInflationFree = inflationFree;
+        mTextSize = textSize;
+        mMultiLineTextSize = multiLineTextSize;
+        mLocale = locale;
+    }
+
+    /**
+     * Measure the label of <code>tab</code> in the background, the result becomes available
+     * through {@link TabView.Tab#getTextMetrics()}.
+     */
+    void precompute(final TabView.Tab tab) {
+        final CharSequence text = tab.getText(mContext);
+        if (TextUtils.isEmpty(text))
+            return;
+        final TabTextMetrics metrics = tab.getTextMetrics();
+        if (metrics != null
+                && metrics.matches(text, mInflationFree, mTextSize, mMultiLineTextSize))
+            return;
+
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                // Labels are displayed in all caps, see layout_tab_text
+                final String label = text.toString().toUpperCase(mLocale);
+                mPaint.setTextSize(mTextSize);
+                final float width = Layout.getDesiredWidth(label, mPaint);
+                mPaint.setTextSize(mMultiLineTextSize);
+                final float multiLineWidth = Layout.getDesiredWidth(label, mPaint);
+                tab.setTextMetrics(new TabTextMetrics(text, mInflationFree, mTextSize,
+                        mMultiLineTextSize, width, multiLineWidth));
+            }
+        });
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "TabTextPrecomputer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Single line widths of a tab label at the regular and the multi line text size, measured
+     * with the paint of an inflated or a code built label.
+     */
+    static final class TabTextMetrics {
+        final CharSequence text;
+        final boolean inflationFree;
+        final float textSize;
+        final float multiLineTextSize;
+        final float width;
+        final float multiLineWidth;
+
+        TabTextMetrics(CharSequence text, boolean inflationFree, float textSize,
+                float multiLineTextSize, float width, float multiLineWidth) {
+            this.text = text;
+            this.inflationFree = inflationFree;
+            this.textSize = textSize;
+            this.multiLineTextSize = multiLineTextSize;
+            this.width = width;
+            this.multiLineWidth = multiLineWidth;
+        }
+
+        boolean matches(CharSequence text, boolean inflationFree, float textSize,
+                float multiLineTextSize) {
+            // Texts set by resource id are resolved again by every user
+            return TextUtils.equals(this.text, text) && this.inflationFree == inflationFree
+                    && this.textSize == textSize && this.multiLineTextSize == multiLineTextSize;
+        }
+    }
+}
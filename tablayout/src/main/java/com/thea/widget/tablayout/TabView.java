@@ -3,7 +3,11 @@ package com.thea.widget.tablayout;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Build;
 import android.support.annotation.Nullable;
 import android.support.v4.view.ViewCompat;
@@ -14,6 +18,7 @@ import android.text.TextUtils;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.LayoutInflater;
+import android.view.ViewGroup;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 import android.widget.ImageView;
@@ -24,61 +29,442 @@ import android.widget.TextView;
  * Created by Thea on 2015/12/17 0017.
  */
 public class TabView extends LinearLayout {
-    private final Tab mTab;
-    private final BottomTabLayout mTabLayout;
+    private Tab mTab;
+    private BottomTabLayout mTabLayout;
 
     private ImageView mIconView;
     private TextView mTextView;
 
+    // Draws the icon and label in place of the views above, see isFlat()
+    private final FlatTabRenderer mFlatRenderer;
+
     private int mDefaultMaxLines = 2;
+    // The tab's text resolved against our context, see initTextAndIcon()
+    private CharSequence mText;
+    // Whether mTextView was built in code, its paint may differ from an inflated one's
+    private boolean mTextViewInflationFree;
+    // BottomTabLayout.getStyleGeneration() as of the last applyTabLayoutStyle()
+    private int mStyleGeneration;
+    private int mMinimumWidth;
+
+    // Specs of the last measure, to measure again in place, see onTabContentChanged()
+    private boolean mHasMeasured;
+    private int mLastWidthMeasureSpec;
+    private int mLastHeightMeasureSpec;
+    // Layout requests of ours and our children are held back while this is set
+    private boolean mBlockLayoutRequests;
+    private boolean mLayoutRequestBlocked;
+
+    // Badge updates within a frame are drawn with a single invalidate, see invalidateBadge()
+    private boolean mBadgeInvalidatePending;
+    private final Runnable mInvalidateBadge = new Runnable() {
+        @Override
+        public void run() {
+            mBadgeInvalidatePending = false;
+            invalidate();
+        }
+    };
+
+    // Width of the content under the constraints below, see measureContentWidth()
+    private int mContentWidth = -1;
+    private int mContentWidthSpec;
+    private int mContentHeightSpec;
+    private int mContentMaxWidth;
+
+    // Stands in for every icon of a view only used for measuring, see bindIcon()
+    private final Drawable mMeasuringIcon;
 
     public TabView(Context context, Tab tab, BottomTabLayout tabLayout) {
+        this(context, tab, tabLayout, false);
+    }
+
+    /**
+     * @param measuringOnly Whether the view is only measured, never shown, so the icons of the
+     *                      tabs bound to it needn't be loaded
+     */
+    TabView(Context context, Tab tab, BottomTabLayout tabLayout, boolean measuringOnly) {
         super(context);
         mTab = tab;
         mTabLayout = tabLayout;
+        mMeasuringIcon = measuringOnly ? new ColorDrawable(Color.TRANSPARENT) : null;
+        mFlatRenderer = tabLayout.isFlatTabViewsEnabled()
+                ? new FlatTabRenderer(this, getResources().getDimensionPixelSize(
+                        R.dimen.tab_icon_size), tabLayout.getTabLabelPaint(),
+                        getResources().getConfiguration().locale)
+                : null;
 
         init();
     }
 
-    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
     private void init() {
+        setGravity(Gravity.CENTER);
+        setOrientation(VERTICAL);
+        if (mFlatRenderer != null)
+            setWillNotDraw(false);
+        applyTabLayoutStyle();
+        initTextAndIcon();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void applyTabLayoutStyle() {
+        mStyleGeneration = mTabLayout.getStyleGeneration();
         if (mTabLayout.getTabBackgroundResId() != 0)
             setBackground(TintManager.getDrawable(getContext(), mTabLayout.getTabBackgroundResId()));
+        else
+            setBackground(null);
         ViewCompat.setPaddingRelative(this, mTabLayout.getTabPaddingStart(), mTabLayout.getTabPaddingTop(),
                 mTabLayout.getTabPaddingEnd(), mTabLayout.getTabPaddingBottom());
-        setGravity(Gravity.CENTER);
-        setOrientation(VERTICAL);
-        initTextAndIcon();
+        if (mTextView != null)
+            mTextView.setTextColor(mTabLayout.getTabTextColors());
+        if (mFlatRenderer != null)
+            mFlatRenderer.setTextColors(mTabLayout.getTabTextColors());
     }
 
     private void initTextAndIcon() {
-        final Drawable icon = mTab.getIcon();
-        final CharSequence text = mTab.getText();
+        mText = mTab.getText(getContext());
+        updateIcon();
+        updateText();
+    }
 
-        final LayoutInflater inflater = LayoutInflater.from(getContext());
-        if (icon != null && mIconView == null) {
-            mIconView = (ImageView) inflater.inflate(R.layout.layout_tab_icon, this, false);
-            mIconView.setImageDrawable(icon);
-            addView(mIconView, 0);
+    private void updateIcon() {
+        if (mFlatRenderer != null) {
+            if (mTab.hasIcon())
+                bindIcon();
+            else
+                mFlatRenderer.setIcon(null);
+            return;
         }
-        if (!TextUtils.isEmpty(text) && mTextView == null) {
-            mTextView = (TextView) inflater.inflate(R.layout.layout_tab_text, this, false);
-//            mTextView.setTextAppearance(mTabLayout.getTabTextAppearance());
-            mTextView.setTextColor(mTabLayout.getTabTextColors());
+
+        if (mTab.hasIcon()) {
+            if (mIconView == null) {
+                mIconView = createIconView();
+                addView(mIconView, 0);
+            }
+            bindIcon();
+            mIconView.setVisibility(VISIBLE);
+        } else if (mIconView != null) {
+            // Keep the view around for the next tab bound to us
+            mIconView.setImageDrawable(null);
+            mIconView.setVisibility(GONE);
+        }
+    }
+
+    private void updateText() {
+        final CharSequence text = mText;
+        if (mFlatRenderer != null) {
+            mFlatRenderer.setText(text);
+            return;
+        }
+
+        if (!TextUtils.isEmpty(text)) {
+            if (mTextView == null) {
+                mTextViewInflationFree = mTabLayout.isInflationFreeEnabled();
+                mTextView = createTextView(getContext(), this, mTextViewInflationFree);
+//                mTextView.setTextAppearance(mTabLayout.getTabTextAppearance());
+                mTextView.setTextColor(mTabLayout.getTabTextColors());
+                addView(mTextView);
+            }
             mTextView.setTextSize(mTabLayout.getTabTextSize());
+            mTextView.setMaxLines(mDefaultMaxLines);
             mTextView.setText(text);
-            addView(mTextView);
+            mTextView.setVisibility(VISIBLE);
+        } else if (mTextView != null) {
+            mTextView.setText(null);
+            mTextView.setVisibility(GONE);
+        }
+    }
+
+    private ImageView createIconView() {
+        if (!mTabLayout.isInflationFreeEnabled())
+            return (ImageView) LayoutInflater.from(getContext())
+                    .inflate(R.layout.layout_tab_icon, this, false);
+
+        // Same as layout_tab_icon, without parsing it
+        final ImageView iconView = new ImageView(getContext());
+        final int size = getResources().getDimensionPixelSize(R.dimen.tab_icon_size);
+        iconView.setLayoutParams(new LayoutParams(size, size));
+        iconView.setScaleType(ImageView.ScaleType.CENTER_INSIDE);
+        return iconView;
+    }
+
+    /**
+     * Create a tab label, either inflated from layout_tab_text or built in code with the same
+     * attributes.
+     */
+    static TextView createTextView(Context context, ViewGroup parent, boolean inflationFree) {
+        if (!inflationFree)
+            return (TextView) LayoutInflater.from(context)
+                    .inflate(R.layout.layout_tab_text, parent, false);
+
+        final TextView textView = new TextView(context);
+        textView.setLayoutParams(new LayoutParams(LayoutParams.WRAP_CONTENT,
+                LayoutParams.WRAP_CONTENT));
+        textView.setEllipsize(TextUtils.TruncateAt.END);
+        textView.setGravity(Gravity.CENTER);
+        textView.setMaxLines(2);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+            setAllCaps(textView);
+        return textView;
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static void setAllCaps(TextView textView) {
+        // android:textAllCaps only exists since API 14 too
+        textView.setAllCaps(true);
+    }
+
+    private void bindIcon() {
+        if (mMeasuringIcon != null) {
+            // The icon box has a fixed size whatever the icon, don't load it just to measure
+            setIconDrawable(mMeasuringIcon);
+            return;
+        }
+
+        final Drawable icon = mTab.getIconDrawable();
+        if (icon != null || (mTab.getIconUri() == null && !mTabLayout.isAsyncIconLoadingEnabled())) {
+            setIconDrawable(icon != null ? icon : mTab.getIcon(getContext()));
+            return;
+        }
+
+        // Load the icon in the background at the size it is displayed at
+        final int size = mFlatRenderer != null
+                ? mFlatRenderer.getIconSize() : mIconView.getLayoutParams().width;
+        final TabIconLoader loader = TabIconLoader.get(getContext());
+        final Drawable cachedIcon = loader.getCachedIcon(getContext(), mTab, size);
+        if (cachedIcon != null) {
+            setIconDrawable(cachedIcon);
+            return;
+        }
+
+        final int placeholderResId = mTabLayout.getTabIconPlaceholderResId();
+        setIconDrawable(placeholderResId != 0
+                ? TintManager.getDrawable(getContext(), placeholderResId) : null);
+
+        final Tab tab = mTab;
+        final int iconResId = tab.getIconResId();
+        final Uri iconUri = tab.getIconUri();
+        loader.loadIcon(tab, size, new TabIconLoader.Callback() {
+            @Override
+            public void onIconLoaded(Drawable icon) {
+                // Ignore the icon if we've been rebound or the tab's icon changed meanwhile
+                if (icon != null && mTab == tab && tab.getIconDrawable() == null
+                        && tab.getIconResId() == iconResId && tab.getIconUri() == iconUri) {
+                    // Build our own from what was loaded, resolved against our context
+                    final Drawable cachedIcon = loader.getCachedIcon(getContext(), tab, size);
+                    setIconDrawable(cachedIcon != null ? cachedIcon : icon);
+                }
+            }
+        });
+    }
+
+    private void setIconDrawable(Drawable icon) {
+        if (mFlatRenderer != null)
+            mFlatRenderer.setIcon(icon);
+        else
+            mIconView.setImageDrawable(icon);
+    }
+
+    /**
+     * Rebind this view to another tab, reusing the icon and text views it already has.
+     *
+     * @param tab The tab to display
+     */
+    public void bind(Tab tab) {
+        if (mTabLayout == null)
+            throw new IllegalStateException("This view was released to a pool");
+        bind(tab, mTabLayout);
+    }
+
+    /**
+     * Rebind this view to a tab of <code>tabLayout</code>, which may be another layout than the
+     * one this view was created for if the views are shared through a {@link TabViewPool}.
+     */
+    void bind(Tab tab, BottomTabLayout tabLayout) {
+        if (mTab != null && mTab != tab && mTab.getBadge() != tab.getBadge())
+            invalidateBadge();
+        if (mTabLayout != tabLayout || mStyleGeneration != tabLayout.getStyleGeneration()) {
+            mTabLayout = tabLayout;
+            applyTabLayoutStyle();
+        } else if (mTab == tab) {
+            return;
+        } else if (mTab != null && mTab.hasSameContent(tab)) {
+            // Nothing to display differently, just take over the new tab
+            mTab = tab;
+            return;
+        }
+        mTab = tab;
+        setSelected(false);
+        setIconScale(1f);
+        initTextAndIcon();
+    }
+
+    /**
+     * Drop the tab, layout and click listener of this view along with what it displays, so a
+     * pooled view keeps none of them alive. The view shows nothing until it's bound again.
+     */
+    void unbind() {
+        if (mBadgeInvalidatePending) {
+            removeCallbacks(mInvalidateBadge);
+            mBadgeInvalidatePending = false;
+        }
+        setOnClickListener(null);
+        setSelected(false);
+        setIconScale(1f);
+        if (mFlatRenderer != null) {
+            mFlatRenderer.setIcon(null);
+            mFlatRenderer.setText(null);
+        } else {
+            if (mIconView != null)
+                mIconView.setImageDrawable(null);
+            if (mTextView != null)
+                mTextView.setText(null);
+        }
+        mTab = null;
+        mTabLayout = null;
+        mText = null;
+        mContentWidth = -1;
+    }
+
+    /**
+     * Display the new icon and/or text of our tab, rebinding only the affected child. If the
+     * tab keeps its size it is measured and laid out again on its own, without a layout pass
+     * of the whole tab bar.
+     *
+     * @param changes {@link Tab#CHANGED_ICON}, {@link Tab#CHANGED_TEXT} and/or
+     *                {@link Tab#CHANGED_BADGE}
+     */
+    void onTabContentChanged(int changes) {
+        if ((changes & Tab.CHANGED_BADGE) != 0) {
+            // Badges are drawn over the content, they never change the tab's size
+            invalidateBadge();
+            changes &= ~Tab.CHANGED_BADGE;
+            if (changes == 0)
+                return;
+        }
+
+        if (getParent() == null || !mHasMeasured || isLayoutRequested()) {
+            // Not laid out yet or about to be anyway
+            updateContent(changes);
+            return;
+        }
+
+        final int width = getMeasuredWidth();
+        final int height = getMeasuredHeight();
+        mBlockLayoutRequests = true;
+        try {
+            updateContent(changes);
+        } finally {
+            mBlockLayoutRequests = false;
+        }
+        if (!mLayoutRequestBlocked)
+            return;
+
+        mLayoutRequestBlocked = false;
+        if (remeasure() && getMeasuredWidth() == width && getMeasuredHeight() == height)
+            layout(getLeft(), getTop(), getRight(), getBottom());
+        else
+            requestLayout();
+    }
+
+    private void updateContent(int changes) {
+        if ((changes & Tab.CHANGED_ICON) != 0)
+            updateIcon();
+        if ((changes & Tab.CHANGED_TEXT) != 0) {
+            final CharSequence text = mTab.getText(getContext());
+            if (!TextUtils.equals(text, mText)) {
+                mText = text;
+                updateText();
+            }
+        }
+    }
+
+    /**
+     * Measure the tab again under the constraints it was last measured with.
+     *
+     * @return False if its content width changed, which the tab bar lays the tabs out by
+     */
+    private boolean remeasure() {
+        final int widthMeasureSpec = mLastWidthMeasureSpec;
+        final int heightMeasureSpec = mLastHeightMeasureSpec;
+        if (mContentWidth >= 0) {
+            final int contentWidth = mContentWidth;
+            forceLayout();
+            if (measureContentWidth(mContentWidthSpec, mContentHeightSpec) != contentWidth)
+                return false;
+        }
+        forceLayout();
+        measure(widthMeasureSpec, heightMeasureSpec);
+        return true;
+    }
+
+    /**
+     * Redraw the badge on the next frame, however many times it changes until then.
+     */
+    private void invalidateBadge() {
+        // Detached views are drawn anew once attached
+        if (mBadgeInvalidatePending || getWindowToken() == null)
+            return;
+        mBadgeInvalidatePending = true;
+        ViewCompat.postOnAnimation(this, mInvalidateBadge);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mBadgeInvalidatePending) {
+            removeCallbacks(mInvalidateBadge);
+            mBadgeInvalidatePending = false;
         }
     }
 
+    @Override
+    public void requestLayout() {
+        if (mBlockLayoutRequests)
+            mLayoutRequestBlocked = true;
+        else
+            super.requestLayout();
+    }
+
     public Tab getTab() {
         return mTab;
     }
 
+    /**
+     * Returns the icon view, or null if the tab has none or is {@link #isFlat() flat}.
+     */
     public ImageView getIconView() {
         return mIconView;
     }
 
+    /**
+     * Returns whether this tab draws its icon and label itself instead of holding child views,
+     * see {@link BottomTabLayout#setFlatTabViewsEnabled(boolean)}.
+     */
+    public boolean isFlat() {
+        return mFlatRenderer != null;
+    }
+
+    /**
+     * Returns whether the tab currently displays an icon.
+     */
+    boolean hasIconShown() {
+        if (mFlatRenderer != null)
+            return mFlatRenderer.getIcon() != null;
+        return mIconView != null && mIconView.getVisibility() == VISIBLE;
+    }
+
+    /**
+     * Scale the icon around its center, e.g. for the selection animation.
+     */
+    void setIconScale(float scale) {
+        if (mFlatRenderer != null) {
+            mFlatRenderer.setIconScale(scale);
+        } else if (mIconView != null) {
+            ViewCompat.setScaleX(mIconView, scale);
+            ViewCompat.setScaleY(mIconView, scale);
+        }
+    }
+
     @Override
     public void setSelected(boolean selected) {
         final boolean changed = (isSelected() != selected);
@@ -93,8 +479,34 @@ public class TabView extends LinearLayout {
         }
     }
 
+    @Override
+    public void setMinimumWidth(int minWidth) {
+        // View requests a layout even if the minimum width doesn't change
+        if (minWidth != mMinimumWidth) {
+            mMinimumWidth = minWidth;
+            super.setMinimumWidth(minWidth);
+        }
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        if (mFlatRenderer != null)
+            mFlatRenderer.onStateChanged();
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return super.verifyDrawable(who)
+                || (mFlatRenderer != null && who == mFlatRenderer.getIcon());
+    }
+
     @Override
     public void onMeasure(final int origWidthMeasureSpec, final int origHeightMeasureSpec) {
+        mHasMeasured = true;
+        mLastWidthMeasureSpec = origWidthMeasureSpec;
+        mLastHeightMeasureSpec = origHeightMeasureSpec;
+
         final int specWidthSize = MeasureSpec.getSize(origWidthMeasureSpec);
         final int specWidthMode = MeasureSpec.getMode(origWidthMeasureSpec);
         final int maxWidth = mTabLayout.getTabMaxWidth();
@@ -111,21 +523,72 @@ public class TabView extends LinearLayout {
             widthMeasureSpec = origWidthMeasureSpec;
         }
 
+        if (mFlatRenderer != null) {
+            final long size = mFlatRenderer.measure(widthMeasureSpec, origHeightMeasureSpec,
+                    mTabLayout.getTabTextSize(), mTabLayout.getTabTextMultiLineSize(),
+                    mDefaultMaxLines, getSuggestedMinimumWidth(), getSuggestedMinimumHeight());
+            setMeasuredDimension(FlatTabRenderer.getWidth(size), FlatTabRenderer.getHeight(size));
+            return;
+        }
+
+        final boolean hasText = mTextView != null && mTextView.getVisibility() == VISIBLE;
+        final boolean hasIcon = mIconView != null && mIconView.getVisibility() == VISIBLE;
+        final CharSequence text = mText;
+        final TextMeasureCache measureCache = mTab.getMeasureCache();
+        final float tabTextSize = mTabLayout.getTabTextSize();
+        final float tabTextMultiLineSize = mTabLayout.getTabTextMultiLineSize();
+        final int tabMaxLines = hasIcon ? 1 : mDefaultMaxLines;
+        final int mode = mTabLayout.getTabMode();
+        final int padding = getPaddingLeft() + getPaddingRight();
+
+        if (hasText) {
+            final int index = measureCache.indexOf(text, widthMeasureSpec, padding, tabTextSize,
+                    tabTextMultiLineSize, tabMaxLines, mode);
+            if (index >= 0) {
+                // We've fitted this text under the same constraints before, skip probing it
+                final float textSize = measureCache.getTextSize(index);
+                final int maxLines = measureCache.getMaxLines(index);
+                if (mTextView.getTextSize() != textSize)
+                    mTextView.setTextSize(TypedValue.COMPLEX_UNIT_PX, textSize);
+                if (TextViewCompat.getMaxLines(mTextView) != maxLines)
+                    mTextView.setMaxLines(maxLines);
+                super.onMeasure(widthMeasureSpec, origHeightMeasureSpec);
+                return;
+            }
+
+            final TabTextPrecomputer.TabTextMetrics metrics = mTab.getTextMetrics();
+            if (metrics != null && metrics.matches(text, mTextViewInflationFree, tabTextSize,
+                    tabTextMultiLineSize)) {
+                // The label was measured in the background, so we know whether it wraps at the
+                // regular text size without laying it out first
+                final boolean fits = specWidthMode == MeasureSpec.UNSPECIFIED
+                        || metrics.width <= MeasureSpec.getSize(widthMeasureSpec) - padding;
+                final float textSize = hasIcon || fits ? tabTextSize : metrics.multiLineTextSize;
+                if (mTextView.getTextSize() != textSize)
+                    mTextView.setTextSize(TypedValue.COMPLEX_UNIT_PX, textSize);
+                if (TextViewCompat.getMaxLines(mTextView) != tabMaxLines)
+                    mTextView.setMaxLines(tabMaxLines);
+                super.onMeasure(widthMeasureSpec, origHeightMeasureSpec);
+                measureCache.put(text, widthMeasureSpec, padding, tabTextSize,
+                        tabTextMultiLineSize, tabMaxLines, mode, textSize, tabMaxLines);
+                return;
+            }
+        }
+
         // Now lets measure
         super.onMeasure(widthMeasureSpec, origHeightMeasureSpec);
 
         // We need to switch the text size based on whether the text is spanning 2 lines or not
-        if (mTextView != null) {
-            final Resources res = getResources();
-            float textSize = mTabLayout.getTabTextSize();
+        if (hasText) {
+            float textSize = tabTextSize;
             int maxLines = mDefaultMaxLines;
 
-            if (mIconView != null && mIconView.getVisibility() == VISIBLE) {
+            if (hasIcon) {
                 // If the icon view is being displayed, we limit the text to 1 line
                 maxLines = 1;
             } else if (mTextView.getLineCount() > 1) {
                 // Otherwise when we have text which wraps we reduce the text size
-                textSize = mTabLayout.getTabTextMultiLineSize();
+                textSize = tabTextMultiLineSize;
             }
 
             final float curTextSize = mTextView.getTextSize();
@@ -155,7 +618,86 @@ public class TabView extends LinearLayout {
                     super.onMeasure(widthMeasureSpec, origHeightMeasureSpec);
                 }
             }
+
+            measureCache.put(text, widthMeasureSpec, padding, tabTextSize, tabTextMultiLineSize,
+                    tabMaxLines, mode, mTextView.getTextSize(),
+                    TextViewCompat.getMaxLines(mTextView));
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mFlatRenderer != null)
+            mFlatRenderer.layout(r - l, b - t);
+        else
+            super.onLayout(changed, l, t, r, b);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mFlatRenderer != null)
+            mFlatRenderer.draw(canvas);
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (mTab != null && mTab.hasBadge())
+            drawBadge(canvas);
+    }
+
+    private void drawBadge(Canvas canvas) {
+        // Anchor the badge to the end of the icon, else of the label
+        final boolean rtl = ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL;
+        int anchorX = rtl ? getPaddingLeft() : getWidth() - getPaddingRight();
+        int anchorY = getPaddingTop();
+        if (mFlatRenderer != null) {
+            if (mFlatRenderer.getIcon() != null || mFlatRenderer.getText() != null) {
+                anchorX = rtl ? mFlatRenderer.getContentLeft() : mFlatRenderer.getContentRight();
+                anchorY = mFlatRenderer.getContentTop();
+            }
+        } else if (mIconView != null && mIconView.getVisibility() == VISIBLE) {
+            anchorX = rtl ? mIconView.getLeft() : mIconView.getRight();
+            anchorY = mIconView.getTop();
+        } else if (mTextView != null && mTextView.getVisibility() == VISIBLE) {
+            anchorX = rtl ? mTextView.getLeft() : mTextView.getRight();
+            anchorY = mTextView.getTop();
+        }
+        mTabLayout.getBadgeRenderer().draw(canvas, mTab.getBadge(), anchorX, anchorY,
+                getWidth(), rtl);
+    }
+
+    /**
+     * Returns the badge as announced by accessibility services, or null if there is none.
+     */
+    private CharSequence getBadgeDescription() {
+        if (mTab == null || !mTab.hasBadge())
+            return null;
+        final Resources res = getResources();
+        if (mTab.isBadgeDot())
+            return res.getString(R.string.tab_badge_dot_description);
+        final int number = mTab.getBadgeNumber();
+        if (number > Tab.BADGE_MAX_NUMBER)
+            return res.getString(R.string.tab_badge_capped_description, Tab.BADGE_MAX_NUMBER);
+        return res.getQuantityString(R.plurals.tab_badge_description, number, number);
+    }
+
+    /**
+     * Returns the width the tab wants under the given specs. The tab is only measured for it if
+     * its content or the constraints changed since the last time.
+     */
+    int measureContentWidth(int widthMeasureSpec, int heightMeasureSpec) {
+        final int maxWidth = mTabLayout.getTabMaxWidth();
+        if (mContentWidth < 0 || isLayoutRequested() || widthMeasureSpec != mContentWidthSpec
+                || heightMeasureSpec != mContentHeightSpec || maxWidth != mContentMaxWidth) {
+            measure(widthMeasureSpec, heightMeasureSpec);
+            mContentWidth = getMeasuredWidth();
+            mContentWidthSpec = widthMeasureSpec;
+            mContentHeightSpec = heightMeasureSpec;
+            mContentMaxWidth = maxWidth;
         }
+        return mContentWidth;
     }
 
     @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
@@ -164,6 +706,12 @@ public class TabView extends LinearLayout {
         super.onInitializeAccessibilityEvent(event);
         // This view masquerades as an action bar tab.
         event.setClassName(TabView.class.getName());
+        if (mFlatRenderer != null && mFlatRenderer.getText() != null)
+            // There is no text view to announce the label
+            event.getText().add(mText);
+        final CharSequence badge = getBadgeDescription();
+        if (badge != null)
+            event.getText().add(badge);
     }
 
     @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
@@ -172,6 +720,13 @@ public class TabView extends LinearLayout {
         super.onInitializeAccessibilityNodeInfo(info);
         // This view masquerades as an action bar tab.
         info.setClassName(TabView.class.getName());
+        if (mFlatRenderer != null && mFlatRenderer.getText() != null)
+            info.setText(mText);
+        final CharSequence badge = getBadgeDescription();
+        if (badge != null)
+            // The badge is only drawn, describe the tab along with it
+            info.setContentDescription(!TextUtils.isEmpty(mText)
+                    ? mText + ", " + badge : badge);
     }
 
     /**
@@ -181,73 +736,376 @@ public class TabView extends LinearLayout {
         return layout.getLineWidth(line) * (textSize / layout.getPaint().getTextSize());
     }
 
-    public static final class Tab {
+    /**
+     * The data of a tab. A tab holds no {@link Context}: icons and texts set by resource id are
+     * resolved against the context of the {@link TabView} displaying the tab, so tabs can be
+     * kept in long lived caches and added to layouts of other Activities. Prefer resource ids
+     * or {@link Uri}s to {@link #setIcon(Drawable) drawables} for such tabs.
+     *
+     * <p>Changing the icon or text of a tab added to a layout updates its view in place, e.g.
+     * for a live counter, the tab bar is only laid out again if the tab's size changes.</p>
+     */
+    public static final class Tab extends TabStore.Entry {
         public static final int INVALID_POSITION = -1;
+        public static final long NO_ID = -1;
+
+        /** The icon changed, see {@link TabView#onTabContentChanged(int)}. */
+        static final int CHANGED_ICON = 1;
+        /** The text changed, see {@link TabView#onTabContentChanged(int)}. */
+        static final int CHANGED_TEXT = 1 << 1;
+        /** The badge changed, see {@link TabView#onTabContentChanged(int)}. */
+        static final int CHANGED_BADGE = 1 << 2;
+
+        /** Badge numbers above this are shown capped, as "99+". */
+        public static final int BADGE_MAX_NUMBER = 99;
+        /** The badge is a dot, see {@link #getBadge()}. */
+        static final int BADGE_DOT = -1;
+        private static final int BADGE_NONE = 0;
 
-        private Context mContext;
         private Drawable mIcon;
+        private int mIconResId;
+        private Uri mIconUri;
         private CharSequence mText;
+        private int mTextResId;
 
+        // Position of a tab outside of a layout, the layout's store keeps those of its tabs
         private int mPosition = INVALID_POSITION;
+        private long mId = NO_ID;
+        private int mBadge = BADGE_NONE;
+
+        private final TextMeasureCache mMeasureCache = new TextMeasureCache();
+        private volatile TabTextPrecomputer.TabTextMetrics mTextMetrics;
+
+        public Tab() {
+        }
+
+        public Tab(Drawable icon, CharSequence text) {
+            mIcon = icon;
+            mText = text;
+        }
+
+        public Tab(int iconResId, CharSequence text) {
+            mIconResId = iconResId;
+            mText = text;
+        }
+
+        public Tab(Drawable icon, int textResId) {
+            mIcon = icon;
+            mTextResId = textResId;
+        }
+
+        public Tab(int iconResId, int textResId) {
+            mIconResId = iconResId;
+            mTextResId = textResId;
+        }
 
+        /**
+         * @deprecated Tabs no longer hold a context, use {@link #Tab()}
+         */
+        @Deprecated
         public Tab(Context context) {
-            mContext = context;
+            this();
         }
 
+        /**
+         * @deprecated Tabs no longer hold a context, use {@link #Tab(Drawable, CharSequence)}
+         */
+        @Deprecated
         public Tab(Context context, Drawable icon, CharSequence text) {
-            this.mIcon = icon;
-            this.mText = text;
-            mContext = context;
+            this(icon, text);
         }
 
+        /**
+         * @deprecated Tabs no longer hold a context, use {@link #Tab(int, CharSequence)}
+         */
+        @Deprecated
         public Tab(Context context, int iconResId, CharSequence text) {
-            this(context, TintManager.getDrawable(context, iconResId), text);
+            this(iconResId, text);
         }
 
+        /**
+         * @deprecated Tabs no longer hold a context, use {@link #Tab(Drawable, int)}
+         */
+        @Deprecated
         public Tab(Context context, Drawable icon, int textResId) {
-            this(context, icon, context.getResources().getText(textResId));
+            this(icon, textResId);
         }
 
+        /**
+         * @deprecated Tabs no longer hold a context, use {@link #Tab(int, int)}
+         */
+        @Deprecated
         public Tab(Context context, int iconResId, int textResId) {
-            this(context, TintManager.getDrawable(context, iconResId), textResId);
+            this(iconResId, textResId);
+        }
+
+        /**
+         * Returns the icon of this tab, resolving an icon set by resource id against
+         * <code>context</code>. The resolved drawable isn't kept, every call returns a new one.
+         * Icons set by {@link Uri} are only loaded by the {@link TabView}, this returns null
+         * for them.
+         */
+        @Nullable
+        public Drawable getIcon(Context context) {
+            if (mIcon == null && mIconResId != 0)
+                return TintManager.getDrawable(context, mIconResId);
+            return mIcon;
+        }
+
+        /**
+         * Returns the icon drawable set with {@link #setIcon(Drawable)}, if any.
+         */
+        @Nullable
+        Drawable getIconDrawable() {
+            return mIcon;
         }
 
+        /**
+         * Returns the icon set with {@link #setIcon(Drawable)}, null if the icon is set by
+         * resource id or {@link Uri}.
+         *
+         * @deprecated Tabs no longer hold a context to resolve icons set by resource id, use
+         * {@link #getIcon(Context)}
+         */
+        @Deprecated
         @Nullable
         public Drawable getIcon() {
             return mIcon;
         }
 
+        public int getIconResId() {
+            return mIconResId;
+        }
+
+        @Nullable
+        public Uri getIconUri() {
+            return mIconUri;
+        }
+
+        public boolean hasIcon() {
+            return mIcon != null || mIconResId != 0 || mIconUri != null;
+        }
+
+        /**
+         * Returns the text of this tab, resolving a text set by resource id against
+         * <code>context</code>.
+         */
+        @Nullable
+        public CharSequence getText(Context context) {
+            if (mText == null && mTextResId != 0)
+                return context.getResources().getText(mTextResId);
+            return mText;
+        }
+
+        /**
+         * Returns the text set with {@link #setText(CharSequence)}. Unlike before tabs stopped
+         * holding a context, this returns null if the text is set by resource id.
+         *
+         * @deprecated Use {@link #getText(Context)}, which resolves texts set by resource id
+         */
+        @Deprecated
         @Nullable
         public CharSequence getText() {
             return mText;
         }
 
+        public int getTextResId() {
+            return mTextResId;
+        }
+
+        public boolean hasText() {
+            return !TextUtils.isEmpty(mText) || mTextResId != 0;
+        }
+
+        @Override
+        boolean hasIconAndText() {
+            return hasIcon() && hasText();
+        }
+
+        /**
+         * Returns the position of this tab in its layout, or {@link #INVALID_POSITION} if it
+         * isn't in one.
+         */
         public int getPosition() {
-            return mPosition;
+            final TabStore<?> store = getStore();
+            return store != null ? store.indexOf(this) : mPosition;
+        }
+
+        /**
+         * Let the layout holding this tab update its view, see {@link #CHANGED_ICON}.
+         */
+        private void notifyContentChanged(boolean hadIconAndText, int changes) {
+            if (getStore() != null)
+                getStore().onTabContentChanged(this, hadIconAndText, changes);
+        }
+
+        /**
+         * Returns the stable id of this tab, or {@link #NO_ID} if none was set.
+         */
+        @Override
+        public long getId() {
+            return mId;
+        }
+
+        /**
+         * Set a stable id which identifies this tab across the lists passed to
+         * {@link BottomTabLayout#updateTabs(java.util.List)}. Tabs without an id are matched
+         * by identity.
+         */
+        public Tab setId(long id) {
+            final long oldId = mId;
+            mId = id;
+            if (getStore() != null && oldId != id)
+                getStore().onTabIdChanged(this, oldId);
+            return this;
+        }
+
+        boolean hasSameContent(Tab other) {
+            return mIcon == other.mIcon && mIconResId == other.mIconResId
+                    && (mIconUri == null ? other.mIconUri == null : mIconUri.equals(other.mIconUri))
+                    && TextUtils.equals(mText, other.mText) && mTextResId == other.mTextResId;
         }
 
+        /**
+         * Set the position of a tab which isn't in a layout, the layout maintains the positions of
+         * its tabs itself.
+         */
         public void setPosition(int position) {
-            mPosition = position;
+            if (getStore() == null)
+                mPosition = position;
         }
 
         public Tab setIcon(Drawable icon) {
+            if (mIcon == icon && mIconResId == 0 && mIconUri == null)
+                return this;
+            final boolean hadIconAndText = hasIconAndText();
             mIcon = icon;
+            mIconResId = 0;
+            mIconUri = null;
+            notifyContentChanged(hadIconAndText, CHANGED_ICON);
             return this;
         }
 
+        /**
+         * Set the icon by resource id. The drawable is only resolved when the tab is displayed,
+         * in the background if {@link BottomTabLayout#setAsyncIconLoadingEnabled(boolean)}.
+         */
         public Tab setIcon(int resId) {
-            mIcon = TintManager.getDrawable(mContext, resId);
+            if (mIcon == null && mIconResId == resId && mIconUri == null)
+                return this;
+            final boolean hadIconAndText = hasIconAndText();
+            mIcon = null;
+            mIconResId = resId;
+            mIconUri = null;
+            notifyContentChanged(hadIconAndText, CHANGED_ICON);
+            return this;
+        }
+
+        /**
+         * Set an icon to decode from <code>uri</code> in the background when the tab is
+         * displayed, scaled down to the icon size.
+         */
+        public Tab setIcon(Uri uri) {
+            if (mIcon == null && mIconResId == 0
+                    && (mIconUri == null ? uri == null : mIconUri.equals(uri)))
+                return this;
+            final boolean hadIconAndText = hasIconAndText();
+            mIcon = null;
+            mIconResId = 0;
+            mIconUri = uri;
+            notifyContentChanged(hadIconAndText, CHANGED_ICON);
             return this;
         }
 
         public Tab setText(CharSequence text) {
+            if (mTextResId == 0 && TextUtils.equals(mText, text))
+                return this;
+            final boolean hadIconAndText = hasIconAndText();
             mText = text;
+            mTextResId = 0;
+            mMeasureCache.invalidate();
+            notifyContentChanged(hadIconAndText, CHANGED_TEXT);
             return this;
         }
 
+        /**
+         * Set the text by resource id, it is resolved by the {@link TabView} displaying the tab.
+         */
         public Tab setText(int resId) {
-            mText = mContext.getResources().getText(resId);
+            if (mText == null && mTextResId == resId)
+                return this;
+            final boolean hadIconAndText = hasIconAndText();
+            mText = null;
+            mTextResId = resId;
+            mMeasureCache.invalidate();
+            notifyContentChanged(hadIconAndText, CHANGED_TEXT);
             return this;
         }
+
+        /**
+         * Show <code>number</code> in a badge over the tab, numbers above
+         * {@link #BADGE_MAX_NUMBER} are capped. Badges are drawn over the tab without measuring
+         * or laying it out again, and updates within a frame are drawn once, so they can be
+         * changed as often as needed, e.g. for a live unread count. Must be called on the main
+         * thread once the tab is added to a layout.
+         *
+         * @param number The number to show, 0 or less removes the badge
+         */
+        public Tab setBadgeNumber(int number) {
+            return setBadge(Math.max(number, BADGE_NONE));
+        }
+
+        /**
+         * Show a dot without number over the tab, see {@link #setBadgeNumber(int)}.
+         */
+        public Tab showBadgeDot() {
+            return setBadge(BADGE_DOT);
+        }
+
+        public Tab clearBadge() {
+            return setBadge(BADGE_NONE);
+        }
+
+        private Tab setBadge(int badge) {
+            if (mBadge != badge) {
+                mBadge = badge;
+                notifyContentChanged(hasIconAndText(), CHANGED_BADGE);
+            }
+            return this;
+        }
+
+        public boolean hasBadge() {
+            return mBadge != BADGE_NONE;
+        }
+
+        public boolean isBadgeDot() {
+            return mBadge == BADGE_DOT;
+        }
+
+        /**
+         * Returns the number of the badge, 0 if the tab has no badge or a dot.
+         */
+        public int getBadgeNumber() {
+            return Math.max(mBadge, BADGE_NONE);
+        }
+
+        /**
+         * Returns the badge number, {@link #BADGE_DOT}, or 0 without a badge.
+         */
+        int getBadge() {
+            return mBadge;
+        }
+
+        TextMeasureCache getMeasureCache() {
+            return mMeasureCache;
+        }
+
+        TabTextPrecomputer.TabTextMetrics getTextMetrics() {
+            return mTextMetrics;
+        }
+
+        void setTextMetrics(TabTextPrecomputer.TabTextMetrics textMetrics) {
+            mTextMetrics = textMetrics;
+        }
     }
 }
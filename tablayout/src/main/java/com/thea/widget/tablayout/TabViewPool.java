@@ -0,0 +1,93 @@
+package com.thea.widget.tablayout;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps {@link TabView}s released by removed tabs so that newly added tabs can rebind them
+ * instead of constructing and inflating new views. A pool may be shared by several
+ * {@link BottomTabLayout}s in the same Activity, see {@link BottomTabLayout#setTabViewPool}.
+ */
+public class TabViewPool {
+    private static final int DEFAULT_MAX_SIZE = 16;
+
+    private final ArrayList<TabView> mViews = new ArrayList<>();
+    private final int mMaxSize;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    public TabViewPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The maximum number of views kept, views released beyond it are dropped
+     */
+    public TabViewPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Take a view created with <code>context</code> out of the pool.
+     *
+     * @param flat Whether the view must be a {@link TabView#isFlat() flat} one
+     * @return A released view, or null if there is none for this context
+     */
+    TabView acquire(Context context, boolean flat) {
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            final TabView view = mViews.get(i);
+            if (view.getContext() == context && view.isFlat() == flat) {
+                mHitCount++;
+                return mViews.remove(i);
+            }
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Give back a view which is no longer attached to a parent. The view is unbound from its
+     * tab and layout, so a shared pool doesn't keep a destroyed layout alive.
+     */
+    void release(TabView tabView) {
+        if (mViews.size() < mMaxSize && !mViews.contains(tabView)) {
+            tabView.unbind();
+            mViews.add(tabView);
+        }
+    }
+
+    /**
+     * Drop every pooled view, e.g. when the owning Activity is destroyed.
+     */
+    public void clear() {
+        mViews.clear();
+    }
+
+    public int size() {
+        return mViews.size();
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns how many times a tab was given a pooled view.
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns how many times a tab needed a new view because the pool had none.
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    public void resetCounts() {
+        mHitCount = mMissCount = 0;
+    }
+}
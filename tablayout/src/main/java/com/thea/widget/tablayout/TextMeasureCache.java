@@ -0,0 +1,83 @@
+package com.thea.widget.tablayout;
+
+/**
+ * Remembers the text size and max lines {@link TabView#onMeasure(int, int)} settled on for a tab
+ * label, keyed by the text, width spec, horizontal padding, requested and multi line text sizes,
+ * max lines and tab mode, so that measuring again under the same constraints skips probing the
+ * text layout.
+ *
+ * <p>Holds a few entries because a tab is usually measured with more than one width spec per
+ * layout pass.</p>
+ */
+final class TextMeasureCache {
+    private static final int SIZE = 4;
+
+    private CharSequence mText;
+    private final int[] mWidthSpecs = new int[SIZE];
+    private final int[] mPaddings = new int[SIZE];
+    private final float[] mTextSizes = new float[SIZE];
+    private final float[] mMultiLineTextSizes = new float[SIZE];
+    private final int[] mMaxLines = new int[SIZE];
+    private final int[] mModes = new int[SIZE];
+    private final float[] mResultTextSizes = new float[SIZE];
+    private final int[] mResultMaxLines = new int[SIZE];
+    private int mCount;
+    private int mNext;
+
+    /**
+     * Returns the index of the entry matching the given constraints, or -1.
+     *
+     * @param padding The tab's left and right padding, which the label's width excludes
+     */
+    int indexOf(CharSequence text, int widthSpec, int padding, float textSize,
+            float multiLineTextSize, int maxLines, int mode) {
+        if (text != mText)
+            return -1;
+        for (int i = 0; i < mCount; i++) {
+            if (mWidthSpecs[i] == widthSpec && mPaddings[i] == padding
+                    && mTextSizes[i] == textSize && mMultiLineTextSizes[i] == multiLineTextSize
+                    && mMaxLines[i] == maxLines && mModes[i] == mode)
+                return i;
+        }
+        return -1;
+    }
+
+    float getTextSize(int index) {
+        return mResultTextSizes[index];
+    }
+
+    int getMaxLines(int index) {
+        return mResultMaxLines[index];
+    }
+
+    void put(CharSequence text, int widthSpec, int padding, float textSize,
+            float multiLineTextSize, int maxLines, int mode, float resultTextSize,
+            int resultMaxLines) {
+        if (text != mText) {
+            invalidate();
+            mText = text;
+        }
+        int index = indexOf(text, widthSpec, padding, textSize, multiLineTextSize, maxLines,
+                mode);
+        if (index < 0) {
+            // Replace the oldest entry once full
+            index = mNext;
+            mNext = (mNext + 1) % SIZE;
+            mCount = Math.min(mCount + 1, SIZE);
+        }
+        mWidthSpecs[index] = widthSpec;
+        mPaddings[index] = padding;
+        mTextSizes[index] = textSize;
+        mMultiLineTextSizes[index] = multiLineTextSize;
+        mMaxLines[index] = maxLines;
+        mModes[index] = mode;
+        mResultTextSizes[index] = resultTextSize;
+        mResultMaxLines[index] = resultMaxLines;
+    }
+
+    void invalidate() {
+        mText = null;
+        mCount = 0;
+        mNext = 0;
+    }
+}
@@ -0,0 +1,122 @@
+package com.thea.widget.tablayout;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TabDiffTest {
+    private static List<String> keys(String... keys) {
+        return Arrays.asList(keys);
+    }
+
+    /**
+     * Check that the tabs which aren't moved keep their relative order, so moving the others
+     * into place turns the old list into the new one, and that the move count adds up.
+     */
+    private static void assertConsistent(TabDiff diff, int newCount) {
+        int lastOldPosition = -1;
+        int moved = 0;
+        for (int i = 0; i < newCount; i++) {
+            if (diff.isInserted(i))
+                continue;
+            assertEquals(i, diff.getNewPosition(diff.getOldPosition(i)));
+            if (diff.isMoved(i)) {
+                moved++;
+            } else {
+                assertTrue(diff.getOldPosition(i) > lastOldPosition);
+                lastOldPosition = diff.getOldPosition(i);
+            }
+        }
+        assertEquals(moved, diff.getMoveCount());
+    }
+
+    @Test
+    public void identicalListsHaveNoChanges() {
+        final TabDiff diff = TabDiff.calculate(keys("a", "b", "c"), keys("a", "b", "c"));
+        assertEquals(0, diff.getRemoveCount());
+        assertEquals(0, diff.getInsertCount());
+        assertEquals(0, diff.getMoveCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, diff.getOldPosition(i));
+            assertEquals(i, diff.getNewPosition(i));
+            assertFalse(diff.isMoved(i));
+        }
+    }
+
+    @Test
+    public void insertsAndRemoves() {
+        final TabDiff diff = TabDiff.calculate(keys("a", "b", "c"), keys("a", "x", "c", "y"));
+        assertEquals(1, diff.getRemoveCount());
+        assertEquals(2, diff.getInsertCount());
+        assertEquals(0, diff.getMoveCount());
+        assertTrue(diff.isRemoved(1));
+        assertTrue(diff.isInserted(1));
+        assertTrue(diff.isInserted(3));
+        assertEquals(2, diff.getNewPosition(2));
+        assertEquals(TabDiff.NO_POSITION, diff.getNewPosition(1));
+        assertEquals(TabDiff.NO_POSITION, diff.getOldPosition(3));
+    }
+
+    @Test
+    public void movingOneTabMovesOnlyThatTab() {
+        final TabDiff diff = TabDiff.calculate(keys("a", "b", "c", "d"),
+                keys("b", "c", "d", "a"));
+        assertEquals(1, diff.getMoveCount());
+        assertTrue(diff.isMoved(3));
+        assertFalse(diff.isMoved(0));
+        assertFalse(diff.isMoved(1));
+        assertFalse(diff.isMoved(2));
+        assertConsistent(diff, 4);
+    }
+
+    @Test
+    public void reversingKeepsOneTab() {
+        final TabDiff diff = TabDiff.calculate(keys("a", "b", "c", "d"),
+                keys("d", "c", "b", "a"));
+        assertEquals(3, diff.getMoveCount());
+        int unmoved = 0;
+        for (int i = 0; i < 4; i++) {
+            if (!diff.isMoved(i))
+                unmoved++;
+        }
+        assertEquals(1, unmoved);
+        assertConsistent(diff, 4);
+    }
+
+    @Test
+    public void movesIgnoreInsertedAndRemovedTabs() {
+        final TabDiff diff = TabDiff.calculate(keys("a", "b", "c", "d"),
+                keys("x", "c", "a", "d"));
+        assertEquals(1, diff.getRemoveCount());
+        assertEquals(1, diff.getInsertCount());
+        // Either a or c moves, d stays
+        assertEquals(1, diff.getMoveCount());
+        assertFalse(diff.isMoved(0));
+        assertFalse(diff.isMoved(3));
+        assertConsistent(diff, 4);
+    }
+
+    @Test
+    public void emptyLists() {
+        final TabDiff toEmpty = TabDiff.calculate(keys("a", "b"), keys());
+        assertEquals(2, toEmpty.getRemoveCount());
+        final TabDiff fromEmpty = TabDiff.calculate(keys(), keys("a", "b"));
+        assertEquals(2, fromEmpty.getInsertCount());
+        assertEquals(0, fromEmpty.getMoveCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateOldKeysThrow() {
+        TabDiff.calculate(keys("a", "a"), keys("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateNewKeysThrow() {
+        TabDiff.calculate(keys("a", "b"), keys("a", "a"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.thea.widget.tablayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TabExtentsTest {
+    private TabExtents mExtents;
+
+    @Before
+    public void setUp() {
+        mExtents = new TabExtents();
+    }
+
+    private void setWidths(int... widths) {
+        mExtents.setCount(widths.length);
+        for (int i = 0; i < widths.length; i++)
+            mExtents.setWidth(i, widths[i]);
+    }
+
+    @Test
+    public void newEntriesAreUnmeasured() {
+        mExtents.setCount(3);
+        assertEquals(3, mExtents.getCount());
+        assertTrue(mExtents.hasInvalidWidths());
+        assertEquals(TabExtents.INVALID_WIDTH, mExtents.getWidth(2));
+        assertFalse(mExtents.hasExtent(0));
+    }
+
+    @Test
+    public void layoutPlacesTabsOneAfterAnother() {
+        setWidths(10, 20, 30);
+        assertEquals(65, mExtents.layout(5));
+        assertEquals(5, mExtents.getLeft(0));
+        assertEquals(15, mExtents.getLeft(1));
+        assertEquals(35, mExtents.getLeft(2));
+        assertEquals(65, mExtents.getRight(2));
+    }
+
+    @Test
+    public void layoutSkipsUnmeasuredWidths() {
+        setWidths(10, TabExtents.INVALID_WIDTH, 30);
+        assertEquals(40, mExtents.layout(0));
+        assertEquals(10, mExtents.getLeft(2));
+    }
+
+    @Test
+    public void insertAndRemoveShiftEntries() {
+        setWidths(10, 20);
+        mExtents.insert(1, 15);
+        assertEquals(3, mExtents.getCount());
+        assertEquals(15, mExtents.getWidth(1));
+        assertEquals(20, mExtents.getWidth(2));
+        mExtents.remove(0);
+        assertEquals(2, mExtents.getCount());
+        assertEquals(15, mExtents.getWidth(0));
+        assertEquals(20, mExtents.getWidth(1));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        for (int i = 0; i < 100; i++)
+            mExtents.insert(i, i + 1);
+        assertEquals(100, mExtents.getCount());
+        assertEquals(100, mExtents.getWidth(99));
+        assertEquals(1, mExtents.getWidth(0));
+    }
+
+    @Test
+    public void invalidateWidths() {
+        setWidths(10, 20);
+        assertFalse(mExtents.hasInvalidWidths());
+        mExtents.invalidateWidths();
+        assertTrue(mExtents.hasInvalidWidths());
+        assertEquals(TabExtents.INVALID_WIDTH, mExtents.getWidth(0));
+    }
+
+    @Test
+    public void setCountKeepsExistingEntries() {
+        setWidths(10, 20);
+        mExtents.setCount(1);
+        mExtents.setCount(3);
+        assertEquals(10, mExtents.getWidth(0));
+        assertEquals(TabExtents.INVALID_WIDTH, mExtents.getWidth(1));
+    }
+
+    @Test
+    public void indexAtIsClamped() {
+        assertEquals(-1, mExtents.indexAt(0));
+        setWidths(10, 20, 30);
+        mExtents.layout(0);
+        assertEquals(0, mExtents.indexAt(-5));
+        assertEquals(0, mExtents.indexAt(9));
+        assertEquals(1, mExtents.indexAt(10));
+        assertEquals(2, mExtents.indexAt(59));
+        assertEquals(2, mExtents.indexAt(500));
+    }
+
+    @Test
+    public void calculateScrollX() {
+        setWidths(100, 50, 150);
+        mExtents.layout(0);
+        assertEquals(75, mExtents.calculateScrollX(1, 0f, 100));
+        assertEquals(125, mExtents.calculateScrollX(1, 0.5f, 100));
+        // The last tab has no next tab to move to
+        assertEquals(212, mExtents.calculateScrollX(2, 0.5f, 100));
+        assertEquals(0, mExtents.calculateScrollX(-1, 0f, 100));
+        assertEquals(0, mExtents.calculateScrollX(3, 0f, 100));
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        setWidths(10, 20);
+        mExtents.clear();
+        assertEquals(0, mExtents.getCount());
+        assertFalse(mExtents.hasExtent(0));
+    }
+}
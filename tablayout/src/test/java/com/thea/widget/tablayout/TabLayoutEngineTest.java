@@ -0,0 +1,168 @@
+package com.thea.widget.tablayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TabLayoutEngineTest {
+    private TabLayoutEngine mEngine;
+    private TabExtents mExtents;
+
+    @Before
+    public void setUp() {
+        mEngine = new TabLayoutEngine();
+        mExtents = mEngine.getExtents();
+    }
+
+    private void assertExtents(int[] lefts, int[] widths) {
+        assertEquals(widths.length, mExtents.getCount());
+        for (int i = 0; i < widths.length; i++) {
+            assertEquals("left of tab " + i, lefts[i], mExtents.getLeft(i));
+            assertEquals("width of tab " + i, widths[i], mExtents.getWidth(i));
+        }
+    }
+
+    @Test
+    public void needsContentWidths() {
+        assertFalse(TabLayoutEngine.needsContentWidths(TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_FILL, 300));
+        assertTrue(TabLayoutEngine.needsContentWidths(TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_FILL, TabLayoutEngine.UNBOUNDED));
+        assertTrue(TabLayoutEngine.needsContentWidths(TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_CENTER, 300));
+        assertTrue(TabLayoutEngine.needsContentWidths(TabLayoutEngine.MODE_SCROLLABLE,
+                TabLayoutEngine.GRAVITY_FILL, 300));
+    }
+
+    @Test
+    public void fixedFillSharesWidthEqually() {
+        final int gravity = mEngine.measure(new int[3], 3, TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_FILL, 100, 0);
+        assertEquals(TabLayoutEngine.GRAVITY_FILL, gravity);
+        assertEquals(100, mEngine.getContentWidth());
+        mEngine.layout(10, 110, false);
+        // The remainder goes to the last tabs, like weighted LinearLayout children
+        assertExtents(new int[]{10, 43, 76}, new int[]{33, 33, 34});
+    }
+
+    @Test
+    public void fixedFillWithoutTabs() {
+        mEngine.measure(new int[0], 0, TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_FILL, 100, 0);
+        assertEquals(0, mEngine.getContentWidth());
+    }
+
+    @Test
+    public void fixedCenterGivesEveryTabTheWidestWidth() {
+        final int gravity = mEngine.measure(new int[]{20, 40, 30}, 3,
+                TabLayoutEngine.MODE_FIXED, TabLayoutEngine.GRAVITY_CENTER, 200, 16);
+        assertEquals(TabLayoutEngine.GRAVITY_CENTER, gravity);
+        assertEquals(120, mEngine.getContentWidth());
+        mEngine.layout(0, 200, false);
+        // Centered within the strip
+        assertExtents(new int[]{40, 80, 120}, new int[]{40, 40, 40});
+    }
+
+    @Test
+    public void fixedCenterFallsBackToFillWhenTabsDontFitTheGutters() {
+        // 3 * 60 fits in 200 but not within 200 - 2 * 16
+        final int gravity = mEngine.measure(new int[]{20, 60, 30}, 3,
+                TabLayoutEngine.MODE_FIXED, TabLayoutEngine.GRAVITY_CENTER, 200, 16);
+        assertEquals(TabLayoutEngine.GRAVITY_FILL, gravity);
+        assertEquals(200, mEngine.getContentWidth());
+        mEngine.layout(0, 200, false);
+        assertExtents(new int[]{0, 66, 133}, new int[]{66, 67, 67});
+    }
+
+    @Test
+    public void fixedCenterFitsUnboundedStrip() {
+        final int gravity = mEngine.measure(new int[]{20, 60}, 2, TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_CENTER, TabLayoutEngine.UNBOUNDED, 16);
+        assertEquals(TabLayoutEngine.GRAVITY_CENTER, gravity);
+        assertEquals(120, mEngine.getContentWidth());
+    }
+
+    @Test
+    public void scrollableTabsWrapTheirContent() {
+        mEngine.measure(new int[]{20, 60, 30}, 3, TabLayoutEngine.MODE_SCROLLABLE,
+                TabLayoutEngine.GRAVITY_FILL, 100, 0);
+        assertEquals(110, mEngine.getContentWidth());
+        mEngine.layout(5, 105, false);
+        // Scrollable tabs start at the left even if they don't fill the strip
+        assertExtents(new int[]{5, 25, 85}, new int[]{20, 60, 30});
+    }
+
+    @Test
+    public void rtlPlacesFirstTabAtTheRight() {
+        mEngine.measure(new int[]{20, 60, 30}, 3, TabLayoutEngine.MODE_SCROLLABLE,
+                TabLayoutEngine.GRAVITY_FILL, 200, 0);
+        mEngine.layout(0, 200, true);
+        assertExtents(new int[]{180, 120, 90}, new int[]{20, 60, 30});
+    }
+
+    @Test
+    public void rtlCentersFixedTabs() {
+        mEngine.measure(new int[]{20, 40}, 2, TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_CENTER, 200, 0);
+        mEngine.layout(0, 200, true);
+        assertExtents(new int[]{100, 60}, new int[]{40, 40});
+    }
+
+    @Test
+    public void scrollXCentersTab() {
+        mEngine.measure(new int[]{100, 50, 150}, 3, TabLayoutEngine.MODE_SCROLLABLE,
+                TabLayoutEngine.GRAVITY_FILL, TabLayoutEngine.UNBOUNDED, 0);
+        mEngine.layout(0, 300, false);
+        // Tab 1 spans 100..150, its center 125 goes to the center of a 100 wide viewport
+        assertEquals(75, mEngine.calculateScrollX(TabLayoutEngine.MODE_SCROLLABLE, 1, 0f, 100));
+        // Half way to tab 2, whose center is at 225
+        assertEquals(125, mEngine.calculateScrollX(TabLayoutEngine.MODE_SCROLLABLE, 1, 0.5f,
+                100));
+        assertEquals(0, mEngine.calculateScrollX(TabLayoutEngine.MODE_SCROLLABLE, 3, 0f, 100));
+    }
+
+    @Test
+    public void fixedTabsNeverScroll() {
+        mEngine.measure(new int[3], 3, TabLayoutEngine.MODE_FIXED,
+                TabLayoutEngine.GRAVITY_FILL, 300, 0);
+        mEngine.layout(0, 300, false);
+        assertEquals(0, mEngine.calculateScrollX(TabLayoutEngine.MODE_FIXED, 2, 0f, 100));
+    }
+
+    @Test
+    public void indicatorBounds() {
+        mEngine.measure(new int[]{100, 50, 150}, 3, TabLayoutEngine.MODE_SCROLLABLE,
+                TabLayoutEngine.GRAVITY_FILL, TabLayoutEngine.UNBOUNDED, 0);
+        mEngine.layout(0, 300, false);
+        assertEquals(100, mEngine.getIndicatorLeft(1, 0f));
+        assertEquals(150, mEngine.getIndicatorRight(1, 0f));
+        // Moving towards tab 2 at 150..300
+        assertEquals(125, mEngine.getIndicatorLeft(1, 0.5f));
+        assertEquals(225, mEngine.getIndicatorRight(1, 0.5f));
+        // The last tab has no next tab to move to
+        assertEquals(150, mEngine.getIndicatorLeft(2, 0.5f));
+        assertEquals(300, mEngine.getIndicatorRight(2, 0.5f));
+    }
+
+    @Test
+    public void indicatorBoundsOfTabWithoutExtent() {
+        mEngine.measure(new int[]{100, 0}, 2, TabLayoutEngine.MODE_SCROLLABLE,
+                TabLayoutEngine.GRAVITY_FILL, TabLayoutEngine.UNBOUNDED, 0);
+        mEngine.layout(0, 100, false);
+        assertEquals(-1, mEngine.getIndicatorLeft(1, 0f));
+        assertEquals(-1, mEngine.getIndicatorRight(1, 0f));
+        assertEquals(-1, mEngine.getIndicatorLeft(5, 0f));
+    }
+
+    @Test
+    public void selectedIconScale() {
+        assertEquals(1f, TabLayoutEngine.getSelectedIconScale(0f, 1.5f), 0.0001f);
+        assertEquals(1.25f, TabLayoutEngine.getSelectedIconScale(0.25f, 1.5f), 0.0001f);
+        assertEquals(1.5f, TabLayoutEngine.getSelectedIconScale(0.5f, 1.5f), 0.0001f);
+        assertEquals(1.25f, TabLayoutEngine.getSelectedIconScale(0.75f, 1.5f), 0.0001f);
+        assertEquals(1f, TabLayoutEngine.getSelectedIconScale(1f, 1.5f), 0.0001f);
+    }
+}
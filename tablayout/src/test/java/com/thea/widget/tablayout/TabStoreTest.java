@@ -0,0 +1,207 @@
+package com.thea.widget.tablayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TabStoreTest {
+    private TabStore<Entry> mStore;
+
+    @Before
+    public void setUp() {
+        mStore = new TabStore<>();
+    }
+
+    private Entry[] addTabs(int count) {
+        final Entry[] tabs = new Entry[count];
+        for (int i = 0; i < count; i++) {
+            tabs[i] = new Entry(i);
+            mStore.add(i, tabs[i]);
+        }
+        return tabs;
+    }
+
+    private void assertPositions(Entry... tabs) {
+        assertEquals(tabs.length, mStore.size());
+        for (int i = 0; i < tabs.length; i++) {
+            assertSame(tabs[i], mStore.get(i));
+            assertEquals(i, mStore.indexOf(tabs[i]));
+        }
+    }
+
+    @Test
+    public void addNumbersTabs() {
+        final Entry[] tabs = addTabs(3);
+        assertPositions(tabs);
+    }
+
+    @Test
+    public void insertRenumbersLaterTabs() {
+        final Entry[] tabs = addTabs(3);
+        final Entry inserted = new Entry(10);
+        mStore.add(1, inserted);
+        assertPositions(tabs[0], inserted, tabs[1], tabs[2]);
+    }
+
+    @Test
+    public void removeRenumbersLaterTabs() {
+        final Entry[] tabs = addTabs(4);
+        assertSame(tabs[1], mStore.remove(1));
+        assertPositions(tabs[0], tabs[2], tabs[3]);
+        assertEquals(TabStore.INVALID_POSITION, mStore.indexOf(tabs[1]));
+        assertNull(tabs[1].getStore());
+    }
+
+    @Test
+    public void earlierPositionsStayValidAfterChanges() {
+        final Entry[] tabs = addTabs(4);
+        mStore.remove(2);
+        mStore.add(2, new Entry(10));
+        // Tabs before the first change are never stale
+        assertEquals(0, mStore.indexOf(tabs[0]));
+        assertEquals(1, mStore.indexOf(tabs[1]));
+        assertEquals(3, mStore.indexOf(tabs[3]));
+    }
+
+    @Test
+    public void moveForwardAndBackward() {
+        final Entry[] tabs = addTabs(4);
+        mStore.move(0, 2);
+        assertPositions(tabs[1], tabs[2], tabs[0], tabs[3]);
+        mStore.move(3, 1);
+        assertPositions(tabs[1], tabs[3], tabs[2], tabs[0]);
+    }
+
+    @Test
+    public void setReplacesTab() {
+        final Entry[] tabs = addTabs(3);
+        final Entry replacement = new Entry(10);
+        assertSame(tabs[1], mStore.set(1, replacement));
+        assertPositions(tabs[0], replacement, tabs[2]);
+        assertNull(tabs[1].getStore());
+        assertEquals(TabStore.INVALID_POSITION, mStore.indexOf(tabs[1]));
+    }
+
+    @Test
+    public void setAfterStaleChangeUsesCurrentPosition() {
+        final Entry[] tabs = addTabs(3);
+        mStore.remove(0);
+        final Entry replacement = new Entry(10);
+        mStore.set(1, replacement);
+        assertPositions(tabs[1], replacement);
+    }
+
+    @Test
+    public void findById() {
+        final Entry[] tabs = addTabs(3);
+        assertSame(tabs[2], mStore.findById(2));
+        assertNull(mStore.findById(TabStore.NO_ID));
+        assertNull(mStore.findById(42));
+    }
+
+    @Test
+    public void idMapFollowsRemoveSetAndClear() {
+        final Entry[] tabs = addTabs(3);
+        mStore.remove(0);
+        assertNull(mStore.findById(0));
+        final Entry replacement = new Entry(10);
+        mStore.set(0, replacement);
+        assertNull(mStore.findById(1));
+        assertSame(replacement, mStore.findById(10));
+        mStore.clear();
+        assertNull(mStore.findById(2));
+        assertNull(tabs[2].getStore());
+    }
+
+    @Test
+    public void idMapFollowsIdChanges() {
+        final Entry[] tabs = addTabs(2);
+        tabs[0].setId(20);
+        assertNull(mStore.findById(0));
+        assertSame(tabs[0], mStore.findById(20));
+    }
+
+    @Test
+    public void iconAndTextCount() {
+        final Entry[] tabs = addTabs(2);
+        assertFalse(mStore.hasIconAndText());
+
+        tabs[0].setIconAndText(true);
+        assertTrue(mStore.hasIconAndText());
+        final Entry withIconAndText = new Entry(10);
+        withIconAndText.setIconAndText(true);
+        mStore.add(0, withIconAndText);
+        tabs[0].setIconAndText(false);
+        assertTrue(mStore.hasIconAndText());
+
+        mStore.remove(0);
+        assertFalse(mStore.hasIconAndText());
+        mStore.set(0, withIconAndText);
+        assertTrue(mStore.hasIconAndText());
+        mStore.clear();
+        assertFalse(mStore.hasIconAndText());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addTabOfOtherStoreThrows() {
+        final Entry[] tabs = addTabs(1);
+        new TabStore<Entry>().add(0, tabs[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setTabOfOtherStoreThrows() {
+        final Entry[] tabs = addTabs(1);
+        final TabStore<Entry> other = new TabStore<>();
+        other.add(0, new Entry(10));
+        other.set(0, tabs[0]);
+    }
+
+    @Test
+    public void tabCanMoveToOtherStoreOnceRemoved() {
+        final Entry[] tabs = addTabs(2);
+        final TabStore<Entry> other = new TabStore<>();
+        mStore.remove(0);
+        other.add(0, tabs[0]);
+        mStore.clear();
+        assertSame(other, tabs[0].getStore());
+        assertEquals(0, other.indexOf(tabs[0]));
+    }
+
+    private static final class Entry extends TabStore.Entry {
+        private long mId;
+        private boolean mHasIconAndText;
+
+        Entry(long id) {
+            mId = id;
+        }
+
+        @Override
+        long getId() {
+            return mId;
+        }
+
+        void setId(long id) {
+            final long oldId = mId;
+            mId = id;
+            if (getStore() != null)
+                getStore().onTabIdChanged(this, oldId);
+        }
+
+        @Override
+        boolean hasIconAndText() {
+            return mHasIconAndText;
+        }
+
+        void setIconAndText(boolean hasIconAndText) {
+            final boolean hadIconAndText = mHasIconAndText;
+            mHasIconAndText = hasIconAndText;
+            if (getStore() != null)
+                getStore().onTabContentChanged(this, hadIconAndText, 0);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.thea.widget.tablayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextMeasureCacheTest {
+    private static final CharSequence TEXT = "Favorites";
+    private static final int EXACTLY = 1 << 30;
+    private static final int PADDING = 24;
+
+    private TextMeasureCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new TextMeasureCache();
+    }
+
+    private int indexOf(CharSequence text, int width) {
+        return mCache.indexOf(text, EXACTLY | width, PADDING, 42f, 36f, 2, 0);
+    }
+
+    private void put(CharSequence text, int width, float resultTextSize, int resultMaxLines) {
+        mCache.put(text, EXACTLY | width, PADDING, 42f, 36f, 2, 0, resultTextSize,
+                resultMaxLines);
+    }
+
+    @Test
+    public void emptyCacheMisses() {
+        assertEquals(-1, indexOf(TEXT, 270));
+    }
+
+    @Test
+    public void hitReturnsResult() {
+        put(TEXT, 270, 36f, 2);
+        put(TEXT, 1080, 42f, 1);
+        int index = indexOf(TEXT, 270);
+        assertEquals(36f, mCache.getTextSize(index), 0f);
+        assertEquals(2, mCache.getMaxLines(index));
+        index = indexOf(TEXT, 1080);
+        assertEquals(42f, mCache.getTextSize(index), 0f);
+        assertEquals(1, mCache.getMaxLines(index));
+    }
+
+    @Test
+    public void everyConstraintIsPartOfTheKey() {
+        put(TEXT, 270, 36f, 2);
+        assertEquals(-1, indexOf(TEXT, 280));
+        assertEquals(-1, mCache.indexOf(TEXT, EXACTLY | 270, PADDING + 8, 42f, 36f, 2, 0));
+        assertEquals(-1, mCache.indexOf(TEXT, EXACTLY | 270, PADDING, 40f, 36f, 2, 0));
+        assertEquals(-1, mCache.indexOf(TEXT, EXACTLY | 270, PADDING, 42f, 32f, 2, 0));
+        assertEquals(-1, mCache.indexOf(TEXT, EXACTLY | 270, PADDING, 42f, 36f, 1, 0));
+        assertEquals(-1, mCache.indexOf(TEXT, EXACTLY | 270, PADDING, 42f, 36f, 2, 1));
+    }
+
+    @Test
+    public void textIsComparedByIdentity() {
+        put(TEXT, 270, 36f, 2);
+        assertEquals(-1, indexOf(new StringBuilder(TEXT), 270));
+    }
+
+    @Test
+    public void otherTextDropsEveryEntry() {
+        put(TEXT, 270, 36f, 2);
+        put(TEXT, 1080, 42f, 1);
+        put("Recents", 270, 42f, 1);
+        assertEquals(-1, indexOf(TEXT, 1080));
+        put(TEXT, 270, 36f, 2);
+        assertEquals(-1, indexOf("Recents", 270));
+    }
+
+    @Test
+    public void putUpdatesMatchingEntry() {
+        put(TEXT, 270, 36f, 2);
+        put(TEXT, 270, 42f, 1);
+        final int index = indexOf(TEXT, 270);
+        assertEquals(42f, mCache.getTextSize(index), 0f);
+        assertEquals(1, mCache.getMaxLines(index));
+    }
+
+    @Test
+    public void oldestEntryIsEvictedOnceFull() {
+        for (int width = 200; width < 250; width += 10)
+            put(TEXT, width, 36f, 2);
+        assertEquals(-1, indexOf(TEXT, 200));
+        for (int width = 210; width < 250; width += 10)
+            assertTrue(indexOf(TEXT, width) >= 0);
+    }
+
+    @Test
+    public void invalidateDropsEveryEntry() {
+        put(TEXT, 270, 36f, 2);
+        mCache.invalidate();
+        assertEquals(-1, indexOf(TEXT, 270));
+    }
+}